@@ -12,14 +12,40 @@
  *
  */
 
-import java.io.BufferedReader;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.List;
 import java.util.ArrayList;
-import java.util.Set;
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Classe principal do programa.
@@ -28,308 +54,6636 @@ import java.util.HashSet;
  */
 public class AlgGrafos {
     static final String path = "MarksonDeVianaArguello-v1/myfiles/Grafo01.txt";
-    static boolean weightedGraph;
-    static List<Integer> listOfNodes;
 
     /**
-     * Classe responsável por ler cada linha do arquivo.
-     * Possui como atributos o caminho do arquivo no formato (pasta atual/Grafo01.txt)
-     * e um BufferedReader que irá abrir e ler o arquivo.
+     * Interface comum às representações do grafo usadas pelos algoritmos.
+     *
+     * <p>
+     *     Os vértices são numerados de 0 até <i>getQtdVertices</i> - 1. A varredura dos vizinhos é
+     *     feita por um <i>IteradorDeVizinhos</i> obtido uma única vez e reaproveitado para todos os
+     *     vértices, assim nenhum objeto é criado durante a varredura.
+     * </p>
+     */
+    interface Grafo {
+        int getQtdVertices();
+
+        int grau(int vertex);
+
+        boolean adjacentes(int u, int v);
+
+        /**
+         * @return Quantidade de vértices vizinhos de u e de v ao mesmo tempo.
+         */
+        int vizinhosEmComum(int u, int v);
+
+        /**
+         * @return Um novo iterador, que deve ser posicionado com <i>comeca</i> antes do uso.
+         */
+        IteradorDeVizinhos iterador();
+
+        /**
+         * @return O número do vértice no arquivo de onde o grafo foi lido.
+         */
+        long getId(int vertex);
+
+        /**
+         * @return O tipo dos pesos das arestas (ver <i>Pesos</i>), ou SEM_PESO se o grafo não tem pesos.
+         */
+        default int tipoDosPesos() {
+            return Pesos.SEM_PESO;
+        }
+
+        /**
+         * @return O peso da aresta uv, ou NaN se o grafo não tem pesos ou se u e v não são vizinhos.
+         */
+        default double peso(int u, int v) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * Iterador reutilizável sobre os vizinhos de um vértice, em ordem crescente.
+     *
+     * <p>
+     *     Uso: {@code it.comeca(v); for (int w = it.proximo(); w >= 0; w = it.proximo()) { ... }}
+     * </p>
+     */
+    interface IteradorDeVizinhos {
+        void comeca(int vertex);
+
+        /**
+         * @return O próximo vizinho, ou -1 quando não há mais vizinhos.
+         */
+        int proximo();
+
+        /**
+         * @return O peso da aresta até o último vizinho devolvido por <i>proximo</i>, ou NaN se o grafo não tem pesos.
+         */
+        default double peso() {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * Classe imutável para representar o grafo no formato CSR (compressed sparse row).
+     *
+     * <p>
+     *     Os vizinhos do vértice v ficam em ordem crescente nas posições offsets[v] até
+     *     offsets[v + 1] - 1 do vetor targets. Cada vizinho ocupa 4 bytes, sem objetos por
+     *     vértice ou por aresta, e a varredura dos vizinhos é sequencial na memória.
+     * </p>
+     */
+    static class GrafoCSR implements Grafo {
+        private final int[] offsets;
+        private final int[] targets;
+        private final long[] ids; // Número original de cada vértice, null quando é o próprio índice
+        private final Pesos pesos; // Peso de cada arco, na mesma posição de targets, null se não há pesos
+
+        public GrafoCSR(int[] offsets, int[] targets) {
+            this(offsets, targets, null);
+        }
+
+        public GrafoCSR(int[] offsets, int[] targets, long[] ids) {
+            this(offsets, targets, ids, null);
+        }
+
+        public GrafoCSR(int[] offsets, int[] targets, long[] ids, Pesos pesos) {
+            this.offsets = offsets;
+            this.targets = targets;
+            this.ids = ids;
+            this.pesos = pesos;
+        }
+
+        public long getId(int vertex) {
+            return ids == null ? vertex : ids[vertex];
+        }
+
+        public int getQtdVertices() {
+            return offsets.length - 1;
+        }
+
+        public int grau(int vertex) {
+            return offsets[vertex + 1] - offsets[vertex];
+        }
+
+        /**
+         * @return Posição em targets do primeiro vizinho do vértice.
+         */
+        public int inicio(int vertex) {
+            return offsets[vertex];
+        }
+
+        /**
+         * @return Posição em targets logo após o último vizinho do vértice.
+         */
+        public int fim(int vertex) {
+            return offsets[vertex + 1];
+        }
+
+        public int vizinho(int posicao) {
+            return targets[posicao];
+        }
+
+        /**
+         * Função para decidir se u e v são vizinhos por busca binária nos vizinhos ordenados de u.
+         */
+        public boolean adjacentes(int u, int v) {
+            return Arrays.binarySearch(targets, offsets[u], offsets[u + 1], v) >= 0;
+        }
+
+        /**
+         * Função para contar os vizinhos em comum intercalando as duas listas ordenadas.
+         */
+        public int vizinhosEmComum(int u, int v) {
+            int i = offsets[u], fimU = offsets[u + 1];
+            int j = offsets[v], fimV = offsets[v + 1];
+            int comuns = 0;
+            while (i < fimU && j < fimV) {
+                if (targets[i] < targets[j]) i++;
+                else if (targets[i] > targets[j]) j++;
+                else {
+                    comuns++;
+                    i++;
+                    j++;
+                }
+            }
+            return comuns;
+        }
+
+        public IteradorDeVizinhos iterador() {
+            return new IteradorDeVizinhos() {
+                private int posicao, fim;
+
+                public void comeca(int vertex) {
+                    posicao = offsets[vertex];
+                    fim = offsets[vertex + 1];
+                }
+
+                public int proximo() {
+                    return posicao < fim ? targets[posicao++] : -1;
+                }
+
+                public double peso() {
+                    return pesos == null ? Double.NaN : pesos.get(posicao - 1);
+                }
+            };
+        }
+
+        public int tipoDosPesos() {
+            return pesos == null ? Pesos.SEM_PESO : pesos.getTipo();
+        }
+
+        public double peso(int u, int v) {
+            int posicao = Arrays.binarySearch(targets, offsets[u], offsets[u + 1], v);
+            return pesos == null || posicao < 0 ? Double.NaN : pesos.get(posicao);
+        }
+
+        public int[] getOffsets() {
+            return offsets;
+        }
+
+        public int[] getTargets() {
+            return targets;
+        }
+
+        /**
+         * @return Os pesos dos arcos, na mesma ordem de targets, ou null se o grafo não tem pesos.
+         */
+        public Pesos getPesos() {
+            return pesos;
+        }
+    }
+
+    /**
+     * Classe imutável com o peso de cada arco do grafo, paralela ao vetor de targets.
+     *
+     * <p>
+     *     Os pesos são lidos como double e guardados no menor tipo que representa todos eles sem
+     *     perda: int se todos são inteiros que cabem em um int, float se todos cabem exatamente
+     *     em um float e double nos demais casos. -0.0 não é inteiro, pois o int 0 perderia o sinal. Os códigos dos tipos são os mesmos gravados no
+     *     cabeçalho do formato binário (ver <i>GrafoForaDoHeap</i>).
+     * </p>
+     */
+    static class Pesos {
+        public static final int SEM_PESO = 0;
+        public static final int INT = 1;
+        public static final int FLOAT = 2;
+        public static final int DOUBLE = 3;
+
+        private final int tipo;
+        private final int[] inteiros;
+        private final float[] floats;
+        private final double[] doubles;
+
+        private Pesos(int tipo, int[] inteiros, float[] floats, double[] doubles) {
+            this.tipo = tipo;
+            this.inteiros = inteiros;
+            this.floats = floats;
+            this.doubles = doubles;
+        }
+
+        /**
+         * Função que escolhe o menor tipo para os valores e copia os valores para ele.
+         *
+         * @return Os pesos, ou null se <i>valores</i> é null.
+         */
+        public static Pesos compacta(double[] valores) {
+            if (valores == null) return null;
+            int qtd = valores.length;
+            if (IntStream.range(0, qtd).parallel().allMatch(i -> isInt(valores[i]))) {
+                int[] inteiros = new int[qtd];
+                IntStream.range(0, qtd).parallel().forEach(i -> inteiros[i] = (int) valores[i]);
+                return new Pesos(INT, inteiros, null, null);
+            }
+            if (IntStream.range(0, qtd).parallel().allMatch(i -> isFloat(valores[i]))) {
+                float[] floats = new float[qtd];
+                IntStream.range(0, qtd).parallel().forEach(i -> floats[i] = (float) valores[i]);
+                return new Pesos(FLOAT, null, floats, null);
+            }
+            return new Pesos(DOUBLE, null, null, valores);
+        }
+
+        /**
+         * @return Se o valor é guardado exatamente por um int, o que exclui -0.0.
+         */
+        public static boolean isInt(double valor) {
+            return valor == (int) valor && Double.doubleToRawLongBits(valor) != Double.doubleToRawLongBits(-0.0);
+        }
+
+        /**
+         * @return Se o valor é guardado exatamente por um float.
+         */
+        public static boolean isFloat(double valor) {
+            return (float) valor == valor || Double.isNaN(valor);
+        }
+
+        public double get(int arco) {
+            switch (tipo) {
+                case INT:
+                    return inteiros[arco];
+                case FLOAT:
+                    return floats[arco];
+                default:
+                    return doubles[arco];
+            }
+        }
+
+        public int getTipo() {
+            return tipo;
+        }
+
+        /**
+         * @return Quantos bytes cada peso do tipo ocupa.
+         */
+        public static int bytesPorPeso(int tipo) {
+            return tipo == SEM_PESO ? 0 : tipo == DOUBLE ? 8 : 4;
+        }
+
+        public static String nomeDoTipo(int tipo) {
+            return tipo == INT ? "int" : tipo == FLOAT ? "float" : tipo == DOUBLE ? "double" : "sem pesos";
+        }
+    }
+
+    /**
+     * Classe imutável para representar o grafo por uma matriz de adjacência em bits.
+     *
+     * <p>
+     *     A linha do vértice u ocupa <i>palavras</i> longs consecutivos de <i>linhas</i> e o bit v
+     *     da linha indica se u e v são vizinhos. A consulta de adjacência custa O(1), os vizinhos
+     *     em comum são contados com bitCount sobre as duas linhas e a varredura dos vizinhos pula
+     *     64 não vizinhos de cada vez. Ocupa n² / 8 bytes, o que compensa em grafos densos ou pequenos.
+     * </p>
+     */
+    static class GrafoDenso implements Grafo {
+        private final int n;
+        private final int palavras;
+        private final long[] linhas;
+        private final int[] graus;
+        private final long[] ids;
+
+        public GrafoDenso(int n, long[] linhas, long[] ids) {
+            this.n = n;
+            this.ids = ids;
+            this.palavras = (n + 63) >>> 6;
+            this.linhas = linhas;
+            this.graus = new int[n];
+            for (int u = 0; u < n; u++) {
+                for (int i = u * palavras; i < (u + 1) * palavras; i++) graus[u] += Long.bitCount(linhas[i]);
+            }
+        }
+
+        /**
+         * Função para montar a matriz de adjacência a partir de qualquer outra representação.
+         */
+        public static GrafoDenso de(Grafo grafo) {
+            int n = grafo.getQtdVertices();
+            int palavras = (n + 63) >>> 6;
+            long[] linhas = new long[n * palavras];
+            long[] ids = new long[n];
+            IteradorDeVizinhos itW = grafo.iterador();
+            for (int u = 0; u < n; u++) {
+                ids[u] = grafo.getId(u);
+                itW.comeca(u);
+                for (int w = itW.proximo(); w >= 0; w = itW.proximo()) linhas[u * palavras + (w >>> 6)] |= 1L << w;
+            }
+            return new GrafoDenso(n, linhas, ids);
+        }
+
+        public long getId(int vertex) {
+            return ids == null ? vertex : ids[vertex];
+        }
+
+        public int getQtdVertices() {
+            return n;
+        }
+
+        public int grau(int vertex) {
+            return graus[vertex];
+        }
+
+        public boolean adjacentes(int u, int v) {
+            return (linhas[u * palavras + (v >>> 6)] & (1L << v)) != 0;
+        }
+
+        public int vizinhosEmComum(int u, int v) {
+            int linhaU = u * palavras, linhaV = v * palavras;
+            int comuns = 0;
+            for (int i = 0; i < palavras; i++) comuns += Long.bitCount(linhas[linhaU + i] & linhas[linhaV + i]);
+            return comuns;
+        }
+
+        public IteradorDeVizinhos iterador() {
+            return new IteradorDeVizinhos() {
+                private int inicio, palavra, fim;
+                private long bits;
+
+                public void comeca(int vertex) {
+                    inicio = vertex * palavras;
+                    fim = inicio + palavras;
+                    palavra = inicio;
+                    bits = linhas[palavra];
+                }
+
+                public int proximo() {
+                    while (bits == 0) {
+                        if (++palavra >= fim) return -1;
+                        bits = linhas[palavra];
+                    }
+                    int w = ((palavra - inicio) << 6) + Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1; // Apaga o bit menos significativo
+                    return w;
+                }
+            };
+        }
+
+        public int getPalavras() {
+            return palavras;
+        }
+
+        public long[] getLinhas() {
+            return linhas;
+        }
+    }
+
+    /**
+     * Classe para guardar vetores de int e long fora do heap, em blocos de ByteBuffer diretos ou
+     * mapeados de arquivo.
+     *
+     * <p>
+     *     Um ByteBuffer é indexado por int, então a memória é dividida em blocos de 1 GiB e a
+     *     posição (long, em bytes) escolhe o bloco pelos bits altos. Os valores são gravados em
+     *     little-endian e todas as seções começam em múltiplos de 8 bytes, assim nenhum valor
+     *     fica dividido entre dois blocos. A memória não conta para o tamanho do heap e o coletor
+     *     de lixo não percorre o seu conteúdo.
+     * </p>
+     */
+    static class MemoriaForaDoHeap {
+        private static final int BITS_DO_BLOCO = 30;
+        private static final long TAMANHO_DO_BLOCO = 1L << BITS_DO_BLOCO;
+        private static final int MASCARA_DO_BLOCO = (int) (TAMANHO_DO_BLOCO - 1);
+
+        private final ByteBuffer[] blocos;
+
+        private MemoriaForaDoHeap(ByteBuffer[] blocos) {
+            this.blocos = blocos;
+            for (ByteBuffer bloco : blocos) bloco.order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        private static int qtdBlocos(long bytes) {
+            return (int) ((bytes + TAMANHO_DO_BLOCO - 1) >>> BITS_DO_BLOCO);
+        }
+
+        /**
+         * Função que aloca memória direta (fora do heap) com a quantidade de bytes pedida.
+         */
+        public static MemoriaForaDoHeap aloca(long bytes) {
+            ByteBuffer[] blocos = new ByteBuffer[qtdBlocos(bytes)];
+            for (int b = 0; b < blocos.length; b++) {
+                blocos[b] = ByteBuffer.allocateDirect((int) Math.min(TAMANHO_DO_BLOCO, bytes - b * TAMANHO_DO_BLOCO));
+            }
+            return new MemoriaForaDoHeap(blocos);
+        }
+
+        /**
+         * Função que mapeia os primeiros <i>bytes</i> do arquivo na memória.
+         */
+        public static MemoriaForaDoHeap mapeia(FileChannel canal, FileChannel.MapMode modo, long bytes) throws IOException {
+            ByteBuffer[] blocos = new ByteBuffer[qtdBlocos(bytes)];
+            for (int b = 0; b < blocos.length; b++) {
+                blocos[b] = canal.map(modo, b * TAMANHO_DO_BLOCO, Math.min(TAMANHO_DO_BLOCO, bytes - b * TAMANHO_DO_BLOCO));
+            }
+            return new MemoriaForaDoHeap(blocos);
+        }
+
+        public int getInt(long posicao) {
+            return blocos[(int) (posicao >>> BITS_DO_BLOCO)].getInt((int) posicao & MASCARA_DO_BLOCO);
+        }
+
+        public long getLong(long posicao) {
+            return blocos[(int) (posicao >>> BITS_DO_BLOCO)].getLong((int) posicao & MASCARA_DO_BLOCO);
+        }
+
+        public void putInt(long posicao, int valor) {
+            blocos[(int) (posicao >>> BITS_DO_BLOCO)].putInt((int) posicao & MASCARA_DO_BLOCO, valor);
+        }
+
+        public void putLong(long posicao, long valor) {
+            blocos[(int) (posicao >>> BITS_DO_BLOCO)].putLong((int) posicao & MASCARA_DO_BLOCO, valor);
+        }
+
+        public byte getByte(long posicao) {
+            return blocos[(int) (posicao >>> BITS_DO_BLOCO)].get((int) posicao & MASCARA_DO_BLOCO);
+        }
+
+        /**
+         * Função que entrega os bytes de [inicio, fim) ao consumidor, um pedaço por bloco.
+         *
+         * <p>
+         *     Cada pedaço é uma cópia (duplicate) do bloco com position e limit ajustados, então
+         *     várias threads podem percorrer trechos diferentes da mesma memória ao mesmo tempo.
+         * </p>
+         */
+        public void percorre(long inicio, long fim, Consumer<ByteBuffer> consumidor) {
+            while (inicio < fim) {
+                int b = (int) (inicio >>> BITS_DO_BLOCO);
+                long fimDoBloco = Math.min(fim, (b + 1) * TAMANHO_DO_BLOCO);
+                ByteBuffer pedaco = blocos[b].duplicate();
+                pedaco.limit((int) (fimDoBloco - b * TAMANHO_DO_BLOCO)).position((int) inicio & MASCARA_DO_BLOCO);
+                consumidor.accept(pedaco);
+                inicio = fimDoBloco;
+            }
+        }
+    }
+
+    /**
+     * Classe imutável para representar o grafo no formato CSR com os vetores fora do heap.
+     *
+     * <p>
+     *     A memória (alocada ou mapeada de um arquivo .csr) possui, em little-endian, um cabeçalho
+     *     de 40 bytes e os vetores do grafo, cada um começando em posição múltipla de 8:
+     * </p>
+     * <pre>
+     *     0  long  MAGICO ("GRAFOCSR")       24 long  n
+     *     8  int   VERSAO                    32 long  quantidade de arcos m
+     *     12 int   flags (TEM_IDS)           40 offsets: n + 1 longs
+     *     16 int   tipo do peso (Pesos)      ...  ids: n longs, só se TEM_IDS
+     *     20 int   reservado (0)             ...  targets: m ints, completado até múltiplo de 8 bytes
+     *                                        ...  pesos: m int, float ou double, completado até múltiplo de 8 bytes
+     * </pre>
+     * <p>
+     *     Os offsets e as posições são long, e o heap só guarda os vetores por vértice dos
+     *     algoritmos. Um grafo lido para o heap e gravado por <i>grava</i> tem no máximo 2^31 - 1
+     *     arcos; arquivos com bilhões de arestas são montados direto em disco por
+     *     <i>ConstrutorForaDoHeap</i> (ver <i>converteParaCsr</i>). Quando os números originais são 0..n-1 os ids não
+     *     são gravados. Abrir o arquivo só valida o cabeçalho e mapeia os vetores, sem leitura
+     *     nem conversão dos dados.
+     * </p>
+     */
+    static class GrafoForaDoHeap implements Grafo {
+        public static final long MAGICO = 0x5253434F46415247L; // "GRAFOCSR" em little-endian
+        public static final int VERSAO = 1;
+        public static final int TEM_IDS = 1;
+        private static final long CABECALHO = 40;
+
+        private final MemoriaForaDoHeap memoria;
+        private final int n;
+        private final long qtdArcos;
+        private final long inicioOffsets;
+        private final long inicioIds; // -1 se os ids não foram gravados
+        private final long inicioTargets;
+        private final int tipoDosPesos;
+        private final long inicioPesos;
+
+        private GrafoForaDoHeap(MemoriaForaDoHeap memoria) {
+            this.memoria = memoria;
+            this.n = (int) memoria.getLong(24);
+            this.qtdArcos = memoria.getLong(32);
+            this.inicioOffsets = CABECALHO;
+            boolean temIds = (memoria.getInt(12) & TEM_IDS) != 0;
+            this.inicioIds = temIds ? inicioOffsets + 8L * (n + 1) : -1;
+            this.inicioTargets = inicioOffsets + 8L * (n + 1) + (temIds ? 8L * n : 0);
+            this.tipoDosPesos = memoria.getInt(16);
+            this.inicioPesos = inicioTargets + 4 * (qtdArcos + (qtdArcos & 1));
+        }
+
+        private static long bytesNecessarios(long n, long qtdArcos, boolean temIds, int tipoDosPesos) {
+            long bytesDosPesos = Pesos.bytesPorPeso(tipoDosPesos) * qtdArcos;
+            return CABECALHO + 8 * (n + 1) + (temIds ? 8 * n : 0) + 4 * (qtdArcos + (qtdArcos & 1))
+                    + (bytesDosPesos + 7) / 8 * 8;
+        }
+
+        private static boolean temIds(Grafo grafo) {
+            for (int v = 0; v < grafo.getQtdVertices(); v++) {
+                if (grafo.getId(v) != v) return true;
+            }
+            return false;
+        }
+
+        private static long qtdArcos(Grafo grafo) {
+            long qtd = 0;
+            for (int v = 0; v < grafo.getQtdVertices(); v++) qtd += grafo.grau(v);
+            return qtd;
+        }
+
+        /**
+         * Função que copia o grafo para a memória no formato descrito na classe.
+         */
+        private static void escreve(Grafo grafo, long qtdArcos, boolean temIds, MemoriaForaDoHeap memoria) {
+            int n = grafo.getQtdVertices();
+            int tipoDosPesos = grafo.tipoDosPesos();
+            long inicioIds = CABECALHO + 8L * (n + 1);
+            long inicioTargets = inicioIds + (temIds ? 8L * n : 0);
+            long inicioPesos = inicioTargets + 4 * (qtdArcos + (qtdArcos & 1));
+            escreveCabecalho(memoria, n, qtdArcos, temIds, tipoDosPesos);
+
+            long pos = 0;
+            IteradorDeVizinhos itW = grafo.iterador();
+            for (int v = 0; v < n; v++) {
+                memoria.putLong(CABECALHO + 8L * v, pos);
+                if (temIds) memoria.putLong(inicioIds + 8L * v, grafo.getId(v));
+                itW.comeca(v);
+                for (int w = itW.proximo(); w >= 0; w = itW.proximo()) {
+                    if (tipoDosPesos != Pesos.SEM_PESO) escrevePeso(memoria, inicioPesos, tipoDosPesos, pos, itW.peso());
+                    memoria.putInt(inicioTargets + 4 * pos++, w);
+                }
+            }
+            memoria.putLong(CABECALHO + 8L * n, pos);
+        }
+
+        private static void escreveCabecalho(MemoriaForaDoHeap memoria, int n, long qtdArcos, boolean temIds, int tipoDosPesos) {
+            memoria.putLong(0, MAGICO);
+            memoria.putInt(8, VERSAO);
+            memoria.putInt(12, temIds ? TEM_IDS : 0);
+            memoria.putInt(16, tipoDosPesos);
+            memoria.putInt(20, 0);
+            memoria.putLong(24, n);
+            memoria.putLong(32, qtdArcos);
+        }
+
+        private static void escrevePeso(MemoriaForaDoHeap memoria, long inicioPesos, int tipo, long arco, double peso) {
+            if (tipo == Pesos.INT) memoria.putInt(inicioPesos + 4 * arco, (int) peso);
+            else if (tipo == Pesos.FLOAT) memoria.putInt(inicioPesos + 4 * arco, Float.floatToRawIntBits((float) peso));
+            else memoria.putLong(inicioPesos + 8 * arco, Double.doubleToRawLongBits(peso));
+        }
+
+        private static double lePeso(MemoriaForaDoHeap memoria, long inicioPesos, int tipo, long arco) {
+            switch (tipo) {
+                case Pesos.INT:
+                    return memoria.getInt(inicioPesos + 4 * arco);
+                case Pesos.FLOAT:
+                    return Float.intBitsToFloat(memoria.getInt(inicioPesos + 4 * arco));
+                case Pesos.DOUBLE:
+                    return Double.longBitsToDouble(memoria.getLong(inicioPesos + 8 * arco));
+                default:
+                    return Double.NaN;
+            }
+        }
+
+        /**
+         * Função que copia o grafo para memória direta, fora do heap.
+         *
+         * <p>
+         *     A memória direta é limitada por -XX:MaxDirectMemorySize (por padrão, o tamanho máximo
+         *     do heap) e o grafo de origem já está inteiro na memória. Grafos maiores devem ir
+         *     direto para um arquivo com <i>ConstrutorForaDoHeap</i> e ser abertos com <i>mapeia</i>.
+         * </p>
+         */
+        public static GrafoForaDoHeap de(Grafo grafo) {
+            long qtdArcos = qtdArcos(grafo);
+            boolean temIds = temIds(grafo);
+            MemoriaForaDoHeap memoria = MemoriaForaDoHeap.aloca(bytesNecessarios(grafo.getQtdVertices(), qtdArcos, temIds,
+                    grafo.tipoDosPesos()));
+            escreve(grafo, qtdArcos, temIds, memoria);
+            return new GrafoForaDoHeap(memoria);
+        }
+
+        /**
+         * Função que grava o grafo em um arquivo .csr que pode ser aberto com <i>mapeia</i>.
+         */
+        public static void grava(Grafo grafo, Path arquivo) throws IOException {
+            long qtdArcos = qtdArcos(grafo);
+            boolean temIds = temIds(grafo);
+            long bytes = bytesNecessarios(grafo.getQtdVertices(), qtdArcos, temIds, grafo.tipoDosPesos());
+            try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                escreve(grafo, qtdArcos, temIds, MemoriaForaDoHeap.mapeia(canal, FileChannel.MapMode.READ_WRITE, bytes));
+            }
+        }
+
+        /**
+         * Função para decidir se o arquivo começa com o número mágico do formato.
+         */
+        public static boolean reconhece(Path arquivo) throws IOException {
+            try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+                ByteBuffer inicio = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+                while (inicio.hasRemaining() && canal.read(inicio) >= 0) ;
+                return !inicio.hasRemaining() && inicio.getLong(0) == MAGICO;
+            }
+        }
+
+        /**
+         * Função que abre um arquivo .csr mapeando-o na memória, sem copiar nada para o heap.
+         * O mapeamento continua válido depois que o canal é fechado.
+         *
+         * @throws IOException Se o arquivo não estiver no formato, for de outra versão ou estiver truncado.
+         */
+        public static GrafoForaDoHeap mapeia(Path arquivo) throws IOException {
+            try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+                long tamanho = canal.size();
+                if (tamanho < CABECALHO) throw new IOException(arquivo + ": arquivo menor que o cabeçalho");
+                MemoriaForaDoHeap memoria = MemoriaForaDoHeap.mapeia(canal, FileChannel.MapMode.READ_ONLY, tamanho);
+                if (memoria.getLong(0) != MAGICO) throw new IOException(arquivo + ": não é um grafo binário");
+                if (memoria.getInt(8) != VERSAO) throw new IOException(arquivo + ": versão " + memoria.getInt(8) + " não suportada");
+                if (memoria.getInt(16) < Pesos.SEM_PESO || memoria.getInt(16) > Pesos.DOUBLE) throw new IOException(arquivo + ": tipo de peso " + memoria.getInt(16) + " desconhecido");
+
+                long n = memoria.getLong(24), qtdArcos = memoria.getLong(32);
+                boolean temIds = (memoria.getInt(12) & TEM_IDS) != 0;
+                if (n < 0 || n >= Integer.MAX_VALUE || qtdArcos < 0 || tamanho < bytesNecessarios(n, qtdArcos, temIds, memoria.getInt(16))) {
+                    throw new IOException(arquivo + ": arquivo truncado ou cabeçalho inválido");
+                }
+                return new GrafoForaDoHeap(memoria);
+            }
+        }
+
+        private long offset(int vertex) {
+            return memoria.getLong(inicioOffsets + 8L * vertex);
+        }
+
+        private int target(long posicao) {
+            return memoria.getInt(inicioTargets + 4 * posicao);
+        }
+
+        private double pesoDoArco(long posicao) {
+            return lePeso(memoria, inicioPesos, tipoDosPesos, posicao);
+        }
+
+        public int getQtdVertices() {
+            return n;
+        }
+
+        public long getQtdArcos() {
+            return qtdArcos;
+        }
+
+        public int grau(int vertex) {
+            return (int) (offset(vertex + 1) - offset(vertex));
+        }
+
+        /**
+         * Função para decidir se u e v são vizinhos por busca binária nos vizinhos ordenados de u.
+         */
+        public boolean adjacentes(int u, int v) {
+            return posicaoDoArco(u, v) >= 0;
+        }
+
+        /**
+         * @return A posição do arco uv em targets, ou -1 se u e v não são vizinhos.
+         */
+        private long posicaoDoArco(int u, int v) {
+            long inicio = offset(u), fim = offset(u + 1) - 1;
+            while (inicio <= fim) {
+                long meio = (inicio + fim) >>> 1;
+                int w = target(meio);
+                if (w < v) inicio = meio + 1;
+                else if (w > v) fim = meio - 1;
+                else return meio;
+            }
+            return -1;
+        }
+
+        public int tipoDosPesos() {
+            return tipoDosPesos;
+        }
+
+        public double peso(int u, int v) {
+            long posicao = posicaoDoArco(u, v);
+            return posicao < 0 ? Double.NaN : pesoDoArco(posicao);
+        }
+
+        public int vizinhosEmComum(int u, int v) {
+            long i = offset(u), fimU = offset(u + 1);
+            long j = offset(v), fimV = offset(v + 1);
+            int comuns = 0;
+            while (i < fimU && j < fimV) {
+                int a = target(i), b = target(j);
+                if (a < b) i++;
+                else if (a > b) j++;
+                else {
+                    comuns++;
+                    i++;
+                    j++;
+                }
+            }
+            return comuns;
+        }
+
+        public IteradorDeVizinhos iterador() {
+            return new IteradorDeVizinhos() {
+                private long posicao, fim;
+
+                public void comeca(int vertex) {
+                    posicao = offset(vertex);
+                    fim = offset(vertex + 1);
+                }
+
+                public int proximo() {
+                    return posicao < fim ? target(posicao++) : -1;
+                }
+
+                public double peso() {
+                    return pesoDoArco(posicao - 1);
+                }
+            };
+        }
+
+        public long getId(int vertex) {
+            return inicioIds < 0 ? vertex : memoria.getLong(inicioIds + 8L * vertex);
+        }
+    }
+
+    /**
+     * Classe para montar um grafo grande direto em um arquivo .csr (ver <i>GrafoForaDoHeap</i>),
+     * sem nenhum vetor do tamanho do grafo no heap.
+     *
+     * <p>
+     *     As arestas são adicionadas duas vezes, nas duas passadas. Na primeira só os graus são
+     *     contados, no lugar dos offsets do arquivo, e o tipo dos pesos é escolhido como em
+     *     <i>Pesos.compacta</i>. <i>comecaGravacao</i> soma os graus, o que dá o offset de cada
+     *     lista, e aumenta o arquivo até o tamanho final; na segunda passada cada aresta é escrita
+     *     nas listas das suas duas pontas, usando o offset de cada vértice como a próxima posição
+     *     livre. <i>termina</i> ordena cada lista, retira os vizinhos repetidos e abre o arquivo
+     *     com <i>GrafoForaDoHeap.mapeia</i>.
+     *
+     *     Os vértices são os números de primeiroId até primeiroId + n - 1 e o índice de cada um é a
+     *     diferença para primeiroId, então números sem arestas viram vértices isolados. Laços são
+     *     descartados e cada aresta vira os dois arcos, assim as listas ficam simétricas. Offsets
+     *     e posições são long: o limite é o espaço em disco, não o tamanho de um vetor do heap. Só
+     *     a lista que está sendo ordenada é copiada para o heap.
+     *
+     *     As duas passadas precisam ter as mesmas arestas. Só o total de arcos é conferido, então
+     *     uma aresta que aparece só em uma das passadas pode deixar listas trocadas.
+     * </p>
+     */
+    static class ConstrutorForaDoHeap implements DestinoDeArestas, Closeable {
+        private static final int VERTICES_POR_TAREFA = 1 << 12;
+
+        private final Path arquivo;
+        private final FileChannel canal;
+        private final int n;
+        private final long primeiroId;
+        private final boolean comPesos;
+        private MemoriaForaDoHeap memoria;
+        private boolean gravando; // Segunda passada
+        private boolean todosInt = true, todosFloat = true;
+        private int tipoDosPesos = Pesos.SEM_PESO;
+        private long qtdArcos, arcosGravados, lacos;
+        private long inicioTargets, inicioPesos;
+
+        /**
+         * @param arquivo Arquivo .csr, que é criado ou sobrescrito.
+         * @param n Quantidade de vértices.
+         * @param primeiroId Número do vértice de índice 0.
+         * @param comPesos Se cada aresta é adicionada com o seu peso.
+         */
+        public ConstrutorForaDoHeap(Path arquivo, int n, long primeiroId, boolean comPesos) throws IOException {
+            if (n < 0 || n == Integer.MAX_VALUE) throw new IllegalArgumentException("Quantidade de vértices inválida: " + n);
+            this.arquivo = arquivo;
+            this.n = n;
+            this.primeiroId = primeiroId;
+            this.comPesos = comPesos;
+            canal = FileChannel.open(arquivo, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            memoria = MemoriaForaDoHeap.mapeia(canal, FileChannel.MapMode.READ_WRITE, GrafoForaDoHeap.CABECALHO + 8L * (n + 1));
+        }
+
+        private int indice(long id) {
+            long v = id - primeiroId;
+            if (v < 0 || v >= n) throw new IllegalArgumentException("Vértice " + id + " fora de " + primeiroId + ".." + (primeiroId + n - 1));
+            return (int) v;
+        }
+
+        private long posicaoDoOffset(int v) {
+            return GrafoForaDoHeap.CABECALHO + 8L * v;
+        }
+
+        public ConstrutorForaDoHeap adicionaVertice(long id) {
+            indice(id);
+            return this;
+        }
+
+        public ConstrutorForaDoHeap adicionaAresta(long u, long v) {
+            if (comPesos) throw new IllegalStateException("O grafo tem pesos, falta o peso da aresta " + u + " " + v);
+            adiciona(indice(u), indice(v), Double.NaN);
+            return this;
+        }
+
+        public ConstrutorForaDoHeap adicionaAresta(long u, long v, double peso) {
+            if (!comPesos) throw new IllegalStateException("O construtor foi criado sem pesos");
+            adiciona(indice(u), indice(v), peso);
+            return this;
+        }
+
+        private void adiciona(int u, int v, double peso) {
+            if (u == v) {
+                if (!gravando) lacos++;
+                return;
+            }
+            if (gravando) {
+                grava(u, v, peso);
+                grava(v, u, peso);
+                return;
+            }
+            incrementaGrau(u);
+            incrementaGrau(v);
+            if (comPesos) {
+                todosInt &= Pesos.isInt(peso);
+                todosFloat &= Pesos.isFloat(peso);
+            }
+        }
+
+        private void incrementaGrau(int v) { // O grau de v fica no offset de v + 1 até comecaGravacao
+            long posicao = posicaoDoOffset(v + 1);
+            memoria.putLong(posicao, memoria.getLong(posicao) + 1);
+        }
+
+        private void grava(int u, int w, double peso) {
+            long posicao = posicaoDoOffset(u);
+            long arco = memoria.getLong(posicao); // Próxima posição livre da lista de u
+            if (arcosGravados == qtdArcos) throw new IllegalStateException("A segunda passada tem mais arestas que a primeira");
+            memoria.putLong(posicao, arco + 1);
+            memoria.putInt(inicioTargets + 4 * arco, w);
+            if (tipoDosPesos != Pesos.SEM_PESO) GrafoForaDoHeap.escrevePeso(memoria, inicioPesos, tipoDosPesos, arco, peso);
+            arcosGravados++;
+        }
+
+        /**
+         * Função que termina a primeira passada: troca os graus pelos offsets, escolhe o tipo dos
+         * pesos e aumenta o arquivo para caber os vizinhos e os pesos.
+         */
+        public void comecaGravacao() throws IOException {
+            if (gravando) throw new IllegalStateException("A segunda passada já começou");
+            gravando = true;
+            long inicio = 0;
+            for (int v = 0; v < n; v++) { // O offset de v recebe o início da lista e o grau de v sai do offset de v + 1
+                long grau = memoria.getLong(posicaoDoOffset(v + 1));
+                memoria.putLong(posicaoDoOffset(v), inicio);
+                inicio += grau;
+            }
+            qtdArcos = inicio;
+            if (comPesos) tipoDosPesos = todosInt ? Pesos.INT : todosFloat ? Pesos.FLOAT : Pesos.DOUBLE;
+
+            boolean temIds = primeiroId != 0;
+            memoria = MemoriaForaDoHeap.mapeia(canal, FileChannel.MapMode.READ_WRITE,
+                    GrafoForaDoHeap.bytesNecessarios(n, qtdArcos, temIds, tipoDosPesos));
+            long inicioIds = posicaoDoOffset(n + 1);
+            inicioTargets = inicioIds + (temIds ? 8L * n : 0);
+            inicioPesos = inicioTargets + 4 * (qtdArcos + (qtdArcos & 1));
+            if (temIds) {
+                for (int v = 0; v < n; v++) memoria.putLong(inicioIds + 8L * v, primeiroId + v);
+            }
+        }
+
+        /**
+         * Função que termina a segunda passada, deixa as listas ordenadas e sem repetições e
+         * escreve o cabeçalho.
+         *
+         * @return O grafo, mapeado do arquivo.
+         */
+        public GrafoForaDoHeap termina() throws IOException {
+            if (!gravando) throw new IllegalStateException("Falta a segunda passada (comecaGravacao)");
+            if (arcosGravados != qtdArcos) {
+                throw new IllegalStateException("A segunda passada tem " + arcosGravados + " arcos e a primeira contou " + qtdArcos);
+            }
+            // Cada offset aponta para o fim da sua lista, que é o início da lista seguinte
+            for (int v = n; v > 0; v--) memoria.putLong(posicaoDoOffset(v), memoria.getLong(posicaoDoOffset(v - 1)));
+            memoria.putLong(posicaoDoOffset(0), 0);
+
+            ordenaListas();
+            long qtdFinal = retiraRepetidos();
+            boolean temIds = primeiroId != 0;
+            GrafoForaDoHeap.escreveCabecalho(memoria, n, qtdFinal, temIds, tipoDosPesos);
+            long bytes = GrafoForaDoHeap.bytesNecessarios(n, qtdFinal, temIds, tipoDosPesos);
+            if (bytes < canal.size()) {
+                try {
+                    canal.truncate(bytes);
+                } catch (IOException e) {
+                    // Alguns sistemas (como o Windows) não truncam um arquivo mapeado; o final fica sem uso
+                }
+            }
+            canal.close();
+            return GrafoForaDoHeap.mapeia(arquivo);
+        }
+
+        /**
+         * Função que ordena cada lista (e os seus pesos) em paralelo, uma tarefa por faixa de vértices.
+         */
+        private void ordenaListas() {
+            int qtdTarefas = (int) ((n + (long) VERTICES_POR_TAREFA - 1) / VERTICES_POR_TAREFA);
+            IntStream.range(0, qtdTarefas).parallel().forEach(t -> {
+                int[] vizinhos = new int[16];
+                double[] pesos = new double[tipoDosPesos == Pesos.SEM_PESO ? 0 : 16];
+                for (int v = t * VERTICES_POR_TAREFA, fim = (int) Math.min(n, (long) v + VERTICES_POR_TAREFA); v < fim; v++) {
+                    long inicio = memoria.getLong(posicaoDoOffset(v));
+                    int grau = (int) (memoria.getLong(posicaoDoOffset(v + 1)) - inicio);
+                    if (grau > vizinhos.length) {
+                        vizinhos = new int[Math.max(grau, 2 * vizinhos.length)];
+                        if (pesos.length > 0) pesos = new double[vizinhos.length];
+                    }
+                    for (int i = 0; i < grau; i++) {
+                        vizinhos[i] = memoria.getInt(inicioTargets + 4 * (inicio + i));
+                        if (pesos.length > 0) pesos[i] = GrafoForaDoHeap.lePeso(memoria, inicioPesos, tipoDosPesos, inicio + i);
+                    }
+                    if (pesos.length > 0) ordenaComPesos(vizinhos, pesos, 0, grau);
+                    else Arrays.sort(vizinhos, 0, grau);
+                    for (int i = 0; i < grau; i++) {
+                        memoria.putInt(inicioTargets + 4 * (inicio + i), vizinhos[i]);
+                        if (pesos.length > 0) GrafoForaDoHeap.escrevePeso(memoria, inicioPesos, tipoDosPesos, inicio + i, pesos[i]);
+                    }
+                }
+            });
+        }
+
+        /**
+         * Função que retira os vizinhos repetidos de cada lista ordenada, puxando os arcos seguintes
+         * para trás. Fica o peso da primeira ocorrência, como em <i>normaliza</i>, e os pesos são
+         * movidos para logo depois dos vizinhos que sobraram.
+         *
+         * @return A quantidade de arcos que sobrou.
+         */
+        private long retiraRepetidos() {
+            long escritos = 0;
+            long inicio = 0;
+            for (int v = 0; v < n; v++) {
+                long fim = memoria.getLong(posicaoDoOffset(v + 1));
+                memoria.putLong(posicaoDoOffset(v), escritos);
+                int anterior = -1;
+                for (long arco = inicio; arco < fim; arco++) {
+                    int w = memoria.getInt(inicioTargets + 4 * arco);
+                    if (w == anterior) continue;
+                    anterior = w;
+                    if (escritos != arco) {
+                        memoria.putInt(inicioTargets + 4 * escritos, w);
+                        if (tipoDosPesos != Pesos.SEM_PESO) {
+                            GrafoForaDoHeap.escrevePeso(memoria, inicioPesos, tipoDosPesos, escritos,
+                                    GrafoForaDoHeap.lePeso(memoria, inicioPesos, tipoDosPesos, arco));
+                        }
+                    }
+                    escritos++;
+                }
+                inicio = fim;
+            }
+            memoria.putLong(posicaoDoOffset(n), escritos);
+
+            if (tipoDosPesos != Pesos.SEM_PESO && escritos < qtdArcos) { // Os pesos começam logo depois dos vizinhos
+                long novoInicioPesos = inicioTargets + 4 * (escritos + (escritos & 1));
+                for (long arco = 0; arco < escritos; arco++) {
+                    GrafoForaDoHeap.escrevePeso(memoria, novoInicioPesos, tipoDosPesos, arco,
+                            GrafoForaDoHeap.lePeso(memoria, inicioPesos, tipoDosPesos, arco));
+                }
+                inicioPesos = novoInicioPesos;
+            }
+            return escritos;
+        }
+
+        /**
+         * @return Quantos laços foram descartados na primeira passada.
+         */
+        public long getLacos() {
+            return lacos;
+        }
+
+        /**
+         * Função que fecha o arquivo. Depois de <i>termina</i> não faz nada; antes, o arquivo fica
+         * incompleto.
+         */
+        @Override
+        public void close() throws IOException {
+            canal.close();
+        }
+    }
+
+    /**
+     * Classe imutável para representar o grafo com listas de vizinhos comprimidas, no estilo do WebGraph.
+     *
+     * <p>
+     *     A lista do vértice v começa na posição <i>inicio[v]</i> do vetor de bytes e possui o grau,
+     *     a diferença entre o primeiro vizinho e v (em zig-zag, pois pode ser negativa) e os
+     *     intervalos entre vizinhos consecutivos menos 1. Cada número é gravado em varint: 7 bits
+     *     por byte e o bit mais alto indica que o número continua no próximo byte. Vizinhos
+     *     próximos, comuns em grafos reais numerados por ordem de descoberta, custam 1 byte.
+     *
+     *     A leitura é sempre sequencial e feita pelo iterador, sem criar objetos. A adjacência
+     *     percorre a menor das duas listas e para assim que passa do vértice procurado.
+     * </p>
+     */
+    static class GrafoComprimido implements Grafo {
+        private final int[] inicio;
+        private final byte[] dados;
+        private final long[] ids;
+
+        private GrafoComprimido(int[] inicio, byte[] dados, long[] ids) {
+            this.inicio = inicio;
+            this.dados = dados;
+            this.ids = ids;
+        }
+
+        private static int tamanhoVarint(int valor) {
+            return (31 - Integer.numberOfLeadingZeros(valor | 1)) / 7 + 1;
+        }
+
+        private static int escreveVarint(byte[] dados, int pos, int valor) {
+            while ((valor & ~0x7F) != 0) {
+                dados[pos++] = (byte) ((valor & 0x7F) | 0x80);
+                valor >>>= 7;
+            }
+            dados[pos++] = (byte) valor;
+            return pos;
+        }
+
+        private static int leVarint(byte[] dados, int pos) {
+            int valor = 0;
+            for (int deslocamento = 0; ; deslocamento += 7) {
+                byte b = dados[pos++];
+                valor |= (b & 0x7F) << deslocamento;
+                if (b >= 0) return valor;
+            }
+        }
+
+        private static int zigZag(int valor) {
+            return (valor << 1) ^ (valor >> 31);
+        }
+
+        private static int desfazZigZag(int valor) {
+            return (valor >>> 1) ^ -(valor & 1);
+        }
+
+        /**
+         * Função que comprime as listas de vizinhos de qualquer outra representação.
+         * Os vizinhos precisam vir em ordem crescente, como em todas as representações do grafo.
+         */
+        public static GrafoComprimido de(Grafo grafo) {
+            int n = grafo.getQtdVertices();
+            IteradorDeVizinhos itW = grafo.iterador();
+            int[] inicio = new int[n + 1];
+            long[] ids = new long[n];
+
+            for (int v = 0; v < n; v++) { // Primeira passada: tamanho de cada lista
+                long bytes = tamanhoVarint(grafo.grau(v));
+                int anterior = -1;
+                itW.comeca(v);
+                for (int w = itW.proximo(); w >= 0; w = itW.proximo()) {
+                    bytes += tamanhoVarint(anterior < 0 ? zigZag(w - v) : w - anterior - 1);
+                    anterior = w;
+                }
+                inicio[v + 1] = Math.toIntExact(inicio[v] + bytes);
+            }
+
+            byte[] dados = new byte[inicio[n]];
+            for (int v = 0; v < n; v++) {
+                ids[v] = grafo.getId(v);
+                int pos = escreveVarint(dados, inicio[v], grafo.grau(v));
+                int anterior = -1;
+                itW.comeca(v);
+                for (int w = itW.proximo(); w >= 0; w = itW.proximo()) {
+                    pos = escreveVarint(dados, pos, anterior < 0 ? zigZag(w - v) : w - anterior - 1);
+                    anterior = w;
+                }
+            }
+            return new GrafoComprimido(inicio, dados, ids);
+        }
+
+        public int getQtdVertices() {
+            return inicio.length - 1;
+        }
+
+        public int grau(int vertex) {
+            return leVarint(dados, inicio[vertex]);
+        }
+
+        /**
+         * @return Quantidade de bytes usados pelas listas de vizinhos.
+         */
+        public int getQtdBytes() {
+            return dados.length;
+        }
+
+        public boolean adjacentes(int u, int v) {
+            if (grau(v) < grau(u)) { // Percorre a lista menor
+                int troca = u;
+                u = v;
+                v = troca;
+            }
+            int pos = inicio[u];
+            int restantes = leVarint(dados, pos);
+            pos += tamanhoVarint(restantes);
+            int w = u - 1;
+            for (boolean primeiro = true; restantes > 0; restantes--, primeiro = false) {
+                int valor = leVarint(dados, pos);
+                pos += tamanhoVarint(valor);
+                w = primeiro ? u + desfazZigZag(valor) : w + valor + 1;
+                if (w >= v) return w == v;
+            }
+            return false;
+        }
+
+        public int vizinhosEmComum(int u, int v) {
+            int posU = inicio[u], posV = inicio[v];
+            int restantesU = leVarint(dados, posU), restantesV = leVarint(dados, posV);
+            posU += tamanhoVarint(restantesU);
+            posV += tamanhoVarint(restantesV);
+            if (restantesU == 0 || restantesV == 0) return 0;
+
+            int valor = leVarint(dados, posU);
+            posU += tamanhoVarint(valor);
+            int a = u + desfazZigZag(valor);
+            valor = leVarint(dados, posV);
+            posV += tamanhoVarint(valor);
+            int b = v + desfazZigZag(valor);
+
+            int comuns = 0;
+            while (true) {
+                boolean avancaU = a <= b, avancaV = b <= a;
+                if (a == b) comuns++;
+                if (avancaU) {
+                    if (--restantesU == 0) return comuns;
+                    valor = leVarint(dados, posU);
+                    posU += tamanhoVarint(valor);
+                    a += valor + 1;
+                }
+                if (avancaV) {
+                    if (--restantesV == 0) return comuns;
+                    valor = leVarint(dados, posV);
+                    posV += tamanhoVarint(valor);
+                    b += valor + 1;
+                }
+            }
+        }
+
+        public IteradorDeVizinhos iterador() {
+            return new IteradorDeVizinhos() {
+                private int posicao, restantes, vertice, atual;
+
+                public void comeca(int vertex) {
+                    vertice = vertex;
+                    posicao = inicio[vertex];
+                    restantes = leVarint(dados, posicao);
+                    posicao += tamanhoVarint(restantes);
+                    atual = -1;
+                }
+
+                public int proximo() {
+                    if (restantes == 0) return -1;
+                    restantes--;
+                    int valor = leVarint(dados, posicao);
+                    posicao += tamanhoVarint(valor);
+                    atual = atual < 0 ? vertice + desfazZigZag(valor) : atual + valor + 1;
+                    return atual;
+                }
+            };
+        }
+
+        public long getId(int vertex) {
+            return ids == null ? vertex : ids[vertex];
+        }
+    }
+
+    /**
+     * Classe para mapear os números dos vértices do arquivo (long) para índices 0..n-1.
+     *
+     * <p>
+     *     Tabela hash de endereçamento aberto com sondagem linear sobre vetores primitivos,
+     *     sem Long nem Integer por entrada. A tabela ocupa no máximo metade das posições.
+     * </p>
+     */
+    static class MapaDeIds {
+        private long[] chaves;
+        private int[] valores; // -1 marca posição vazia
+        private int tamanho;
+
+        public MapaDeIds(int capacidade) {
+            int posicoes = Integer.highestOneBit(Math.max(2, 2 * capacidade - 1)) << 1;
+            chaves = new long[posicoes];
+            valores = new int[posicoes];
+            Arrays.fill(valores, -1);
+        }
+
+        private static int espalha(long id) {
+            long h = id * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+
+        /**
+         * @return O índice do número dado, ou -1 se ele não foi inserido.
+         */
+        public int get(long id) {
+            int mascara = chaves.length - 1;
+            for (int i = espalha(id) & mascara; valores[i] >= 0; i = (i + 1) & mascara) {
+                if (chaves[i] == id) return valores[i];
+            }
+            return -1;
+        }
+
+        /**
+         * Função que associa o número ao índice, se ele ainda não possui um.
+         * @return O índice associado ao número.
+         */
+        public int put(long id, int indice) {
+            if (2 * (tamanho + 1) > chaves.length) cresce();
+            int mascara = chaves.length - 1;
+            int i = espalha(id) & mascara;
+            for (; valores[i] >= 0; i = (i + 1) & mascara) {
+                if (chaves[i] == id) return valores[i];
+            }
+            chaves[i] = id;
+            valores[i] = indice;
+            tamanho++;
+            return indice;
+        }
+
+        private void cresce() {
+            long[] chavesAntigas = chaves;
+            int[] valoresAntigos = valores;
+            chaves = new long[2 * chavesAntigas.length];
+            valores = new int[2 * valoresAntigos.length];
+            Arrays.fill(valores, -1);
+            int mascara = chaves.length - 1;
+            for (int j = 0; j < chavesAntigas.length; j++) {
+                if (valoresAntigos[j] < 0) continue;
+                int i = espalha(chavesAntigas[j]) & mascara;
+                while (valores[i] >= 0) i = (i + 1) & mascara;
+                chaves[i] = chavesAntigas[j];
+                valores[i] = valoresAntigos[j];
+            }
+        }
+
+        public int size() {
+            return tamanho;
+        }
+    }
+
+    /**
+     * Classe com o resultado de <i>normaliza</i>: o CSR corrigido e a quantidade de cada correção.
+     */
+    static class Normalizacao {
+        private final int[] offsets;
+        private final int[] targets;
+        private final double[] pesos;        // Paralelo a targets, null se não há pesos
+        private final long lacos;            // Vértices listados como vizinhos de si mesmos
+        private final long repetidos;        // Vizinhos listados mais de uma vez na mesma linha
+        private final long arestasDeVolta;   // v adicionado aos vizinhos de w porque só v listava w
+        private final long pesosEmConflito;  // Pesos descartados por serem diferentes do peso que ficou na mesma aresta
+        private final long vizinhosSemLinha; // Vizinhos ignorados por não possuírem linha no arquivo
+
+        public Normalizacao(int[] offsets, int[] targets, double[] pesos, long lacos, long repetidos, long arestasDeVolta,
+                            long pesosEmConflito, long vizinhosSemLinha) {
+            this.offsets = offsets;
+            this.targets = targets;
+            this.pesos = pesos;
+            this.lacos = lacos;
+            this.repetidos = repetidos;
+            this.arestasDeVolta = arestasDeVolta;
+            this.pesosEmConflito = pesosEmConflito;
+            this.vizinhosSemLinha = vizinhosSemLinha;
+        }
+
+        public int[] getOffsets() {
+            return offsets;
+        }
+
+        public int[] getTargets() {
+            return targets;
+        }
+
+        public double[] getPesos() {
+            return pesos;
+        }
+
+        public long getLacos() {
+            return lacos;
+        }
+
+        public long getRepetidos() {
+            return repetidos;
+        }
+
+        public long getArestasDeVolta() {
+            return arestasDeVolta;
+        }
+
+        public long getPesosEmConflito() {
+            return pesosEmConflito;
+        }
+
+        public long getVizinhosSemLinha() {
+            return vizinhosSemLinha;
+        }
+
+        public long getCorrecoes() {
+            return lacos + repetidos + arestasDeVolta + pesosEmConflito + vizinhosSemLinha;
+        }
+
+        @Override
+        public String toString() {
+            return lacos + " laço(s) removido(s), " + repetidos + " vizinho(s) repetido(s) removido(s), "
+                    + arestasDeVolta + " aresta(s) de volta adicionada(s)" + (pesos == null ? ", " : " com o peso da ida, "
+                    + pesosEmConflito + " peso(s) diferente(s) da mesma aresta descartado(s), ")
+                    + vizinhosSemLinha + " vizinho(s) sem linha ignorado(s)";
+        }
+    }
+
+    /**
+     * Função que deixa as listas de vizinhos do CSR na forma canônica, em paralelo.
+     *
+     * <p>
+     *     Cada lista é ordenada e perde os laços e os vizinhos repetidos. Depois, para cada arco
+     *     v -> w, uma busca binária na lista de w verifica se w -> v existe; os arcos de volta que
+     *     faltam são contados por vértice, as listas são copiadas para um CSR com o espaço extra e
+     *     os arcos que faltavam são escritos e ordenados. Todas as etapas são laços por vértice no
+     *     ForkJoinPool comum e as únicas variáveis compartilhadas são contadores atômicos por vértice.
+     *
+     *     O resultado tem listas ordenadas, sem repetições e simétricas, que é o que as buscas
+     *     binárias, as intercalações de <i>vizinhosEmComum</i> e as varreduras com carimbos esperam.
+     * </p>
+     *
+     * @param offsets Offsets do CSR lido (não são alterados).
+     * @param targets Vizinhos do CSR lido, em qualquer ordem (as listas são ordenadas no lugar).
+     * @param vizinhosSemLinha Vizinhos já ignorados pela leitura, só para o relatório.
+     * @return O CSR normalizado e as correções feitas.
+     */
+    static Normalizacao normaliza(int[] offsets, int[] targets, long vizinhosSemLinha) {
+        return normaliza(offsets, targets, null, vizinhosSemLinha);
+    }
+
+    /**
+     * Função que normaliza as listas como a anterior, levando junto o peso de cada arco.
+     *
+     * <p>
+     *     Cada peso acompanha o seu arco na ordenação. De um vizinho repetido fica o peso da
+     *     primeira ocorrência na linha e um arco de volta adicionado recebe o peso do arco de ida.
+     *     Se os dois sentidos da aresta têm pesos diferentes, fica nos dois o peso do arco que sai
+     *     do menor índice. Cada peso descartado nesses dois casos é contado em <i>getPesosEmConflito</i>.
+     * </p>
+     *
+     * @param pesos Peso de cada arco, paralelo a targets, ou null se o grafo não tem pesos.
+     */
+    static Normalizacao normaliza(int[] offsets, int[] targets, double[] pesos, long vizinhosSemLinha) {
+        int n = offsets.length - 1;
+        int[] grau = new int[n];  // Grau depois de retirar laços e repetidos
+        int[] lacos = new int[n];
+        int[] conflitos = new int[pesos == null ? 0 : n]; // Pesos descartados em cada vértice
+
+        IntStream.range(0, n).parallel().forEach(v -> {
+            if (pesos == null) Arrays.sort(targets, offsets[v], offsets[v + 1]);
+            else ordenaComPesos(targets, pesos, offsets[v], offsets[v + 1]);
+            int pos = offsets[v];
+            for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+                int w = targets[i];
+                if (w == v) {
+                    lacos[v]++;
+                } else if (pos == offsets[v] || targets[pos - 1] != w) {
+                    if (pesos != null) pesos[pos] = pesos[i];
+                    targets[pos++] = w;
+                } else if (pesos != null && Double.compare(pesos[pos - 1], pesos[i]) != 0) {
+                    conflitos[v]++;
+                }
+            }
+            grau[v] = pos - offsets[v];
+        });
+
+        AtomicIntegerArray faltando = new AtomicIntegerArray(n); // Arcos de volta que faltam em cada vértice
+        IntStream.range(0, n).parallel().forEach(v -> {
+            for (int i = offsets[v]; i < offsets[v] + grau[v]; i++) {
+                int w = targets[i];
+                int volta = Arrays.binarySearch(targets, offsets[w], offsets[w] + grau[w], v);
+                if (volta < 0) {
+                    faltando.incrementAndGet(w);
+                } else if (pesos != null && v < w && Double.compare(pesos[i], pesos[volta]) != 0) {
+                    pesos[volta] = pesos[i]; // Só a tarefa do menor índice escreve no arco w -> v
+                    conflitos[v]++;
+                }
+            }
+        });
+
+        long totalLacos = IntStream.of(lacos).parallel().asLongStream().sum();
+        long totalFaltando = IntStream.range(0, n).parallel().mapToLong(faltando::get).sum();
+        long totalRepetidos = offsets[n] - totalLacos - IntStream.of(grau).parallel().asLongStream().sum();
+        long totalConflitos = IntStream.of(conflitos).parallel().asLongStream().sum();
+        if (totalLacos == 0 && totalRepetidos == 0 && totalFaltando == 0) {
+            return new Normalizacao(offsets, targets, pesos, 0, 0, 0, totalConflitos, vizinhosSemLinha);
+        }
+
+        int[] novosOffsets = new int[n + 1];
+        for (int v = 0; v < n; v++) novosOffsets[v + 1] = grau[v] + faltando.get(v);
+        Arrays.parallelPrefix(novosOffsets, Math::addExact);
+
+        int[] novosTargets = new int[novosOffsets[n]];
+        double[] novosPesos = pesos == null ? null : new double[novosOffsets[n]];
+        AtomicIntegerArray proximaPosicao = new AtomicIntegerArray(n);
+        IntStream.range(0, n).parallel().forEach(v -> {
+            System.arraycopy(targets, offsets[v], novosTargets, novosOffsets[v], grau[v]);
+            if (pesos != null) System.arraycopy(pesos, offsets[v], novosPesos, novosOffsets[v], grau[v]);
+            proximaPosicao.set(v, novosOffsets[v] + grau[v]);
+        });
+        IntStream.range(0, n).parallel().forEach(v -> {
+            for (int i = offsets[v]; i < offsets[v] + grau[v]; i++) {
+                int w = targets[i];
+                if (Arrays.binarySearch(targets, offsets[w], offsets[w] + grau[w], v) < 0) {
+                    int posicao = proximaPosicao.getAndIncrement(w);
+                    novosTargets[posicao] = v;
+                    if (pesos != null) novosPesos[posicao] = pesos[i];
+                }
+            }
+        });
+        IntStream.range(0, n).parallel().forEach(v -> {
+            if (faltando.get(v) == 0) return;
+            if (pesos == null) Arrays.sort(novosTargets, novosOffsets[v], novosOffsets[v + 1]);
+            else ordenaComPesos(novosTargets, novosPesos, novosOffsets[v], novosOffsets[v + 1]);
+        });
+        return new Normalizacao(novosOffsets, novosTargets, novosPesos, totalLacos, totalRepetidos, totalFaltando,
+                totalConflitos, vizinhosSemLinha);
+    }
+
+    /**
+     * Função que ordena targets[inicio, fim) levando cada peso junto com o seu vizinho.
+     *
+     * <p>
+     *     Cada vizinho vira uma chave long (vizinho nos 32 bits altos e a posição nos baixos), então
+     *     a ordenação é estável e vizinhos iguais mantêm a ordem em que foram lidos. Listas que já
+     *     estão em ordem, o caso comum, não são copiadas.
+     * </p>
+     */
+    static void ordenaComPesos(int[] targets, double[] pesos, int inicio, int fim) {
+        int i = inicio + 1;
+        while (i < fim && targets[i - 1] <= targets[i]) i++;
+        if (i >= fim) return;
+
+        long[] chaves = new long[fim - inicio];
+        for (int k = 0; k < chaves.length; k++) chaves[k] = ((long) targets[inicio + k] << 32) | k;
+        Arrays.sort(chaves);
+        double[] copia = Arrays.copyOfRange(pesos, inicio, fim);
+        for (int k = 0; k < chaves.length; k++) {
+            targets[inicio + k] = (int) (chaves[k] >>> 32);
+            pesos[inicio + k] = copia[(int) chaves[k]];
+        }
+    }
+
+    /**
+     * Maior tamanho de vetor que as JVMs aceitam com folga.
+     */
+    static final int MAXIMO_DE_ELEMENTOS = Integer.MAX_VALUE - 8;
+
+    /**
+     * Função para calcular o novo tamanho de um vetor cheio dos construtores.
+     *
+     * <p>
+     *     O tamanho dobra até <i>MAXIMO_DE_ELEMENTOS</i>; um vetor que já está no limite não cresce
+     *     mais e a leitura para com um erro claro, em vez de um overflow de int. Grafos maiores
+     *     devem ser montados fora do heap, com <i>ConstrutorForaDoHeap</i>.
+     * </p>
+     *
+     * @param tamanho O tamanho atual do vetor.
+     * @param conteudo O que o vetor guarda, para a mensagem de erro.
+     * @return O novo tamanho.
+     */
+    static int dobraCapacidade(int tamanho, String conteudo) {
+        if (tamanho >= MAXIMO_DE_ELEMENTOS) throw excedeLimiteDoHeap(conteudo);
+        return (int) Math.min(2L * tamanho, MAXIMO_DE_ELEMENTOS);
+    }
+
+    static IllegalStateException excedeLimiteDoHeap(String conteudo) {
+        return new IllegalStateException("O grafo tem mais de " + MAXIMO_DE_ELEMENTOS + " " + conteudo
+                + ", o limite de um vetor no heap");
+    }
+
+    /**
+     * Classe para montar um grafo imutável a partir das listas de vizinhos de cada vértice.
+     *
+     * <p>
+     *     Os números dos vértices podem ser quaisquer valores long. Cada chamada de
+     *     <i>adicionaVertice</i> começa a lista do vértice e as chamadas de <i>adicionaVizinho</i>
+     *     seguintes completam essa lista, como as linhas do arquivo. Vizinhos que não possuem
+     *     lista são ignorados e, se um vértice recebe duas listas, vale a última.
+     *
+     *     Em <i>constroi</i> os números distintos recebem os índices 0..n-1 em ordem crescente,
+     *     assim os vértices 1 e 2000000000 geram um grafo com 2 vértices, e a ordem dos índices
+     *     é a mesma dos números. O <i>MapaDeIds</i> traduz os vizinhos para índices, o grafo guarda
+     *     o número original de cada índice (ver <i>Grafo.getId</i>) e as listas ficam ordenadas,
+     *     sem repetições e simétricas (ver <i>normaliza</i>).
+     *
+     *     O construtor não é thread-safe, mas o grafo construído é imutável e pode ser verificado
+     *     por várias threads ao mesmo tempo.
+     * </p>
+     */
+    static class ConstrutorDeGrafo {
+        private long[] idDaLinha = new long[16];
+        private int[] inicioDaLinha = new int[17];
+        private long[] vizinhos = new long[64];
+        private double[] pesos; // Peso de cada vizinho, null se o grafo não tem pesos
+        private int qtdLinhas, qtdVizinhos;
+        private Normalizacao normalizacao;
+
+        public ConstrutorDeGrafo() {
+            this(false);
+        }
+
+        /**
+         * @param comPesos Se cada vizinho é adicionado com o peso da aresta.
+         */
+        public ConstrutorDeGrafo(boolean comPesos) {
+            if (comPesos) pesos = new double[vizinhos.length];
+        }
+
+        /**
+         * Função que começa a lista de vizinhos do vértice.
+         */
+        public ConstrutorDeGrafo adicionaVertice(long id) {
+            if (qtdLinhas == idDaLinha.length) {
+                idDaLinha = Arrays.copyOf(idDaLinha, dobraCapacidade(qtdLinhas, "vértices"));
+                inicioDaLinha = Arrays.copyOf(inicioDaLinha, idDaLinha.length + 1);
+            }
+            idDaLinha[qtdLinhas] = id;
+            inicioDaLinha[qtdLinhas] = qtdVizinhos;
+            qtdLinhas++;
+            return this;
+        }
+
+        /**
+         * Função que adiciona um vizinho na lista do último vértice adicionado.
+         */
+        public ConstrutorDeGrafo adicionaVizinho(long id) {
+            if (pesos != null) throw new IllegalStateException("O grafo tem pesos, falta o peso do vizinho " + id);
+            adiciona(id);
+            return this;
+        }
+
+        /**
+         * Função que adiciona um vizinho e o peso da aresta na lista do último vértice adicionado.
+         */
+        public ConstrutorDeGrafo adicionaVizinho(long id, double peso) {
+            if (pesos == null) throw new IllegalStateException("O construtor foi criado sem pesos");
+            int posicao = adiciona(id); // Antes de usar pesos, que pode ter sido realocado
+            pesos[posicao] = peso;
+            return this;
+        }
+
+        private int adiciona(long id) {
+            if (qtdLinhas == 0) throw new IllegalStateException("Nenhum vértice foi adicionado antes do vizinho " + id);
+            if (qtdVizinhos == vizinhos.length) {
+                vizinhos = Arrays.copyOf(vizinhos, dobraCapacidade(vizinhos.length, "vizinhos nas listas"));
+                if (pesos != null) pesos = Arrays.copyOf(pesos, vizinhos.length);
+            }
+            vizinhos[qtdVizinhos] = id;
+            return qtdVizinhos++;
+        }
+
+        /**
+         * Função que monta o grafo com as listas adicionadas até agora.
+         *
+         * @return O grafo, no formato escolhido por <i>escolheRepresentacao</i>.
+         */
+        public Grafo constroi() {
+            inicioDaLinha[qtdLinhas] = qtdVizinhos;
+
+            // Números distintos em ordem crescente, o índice de cada vértice é a sua posição
+            long[] ids = Arrays.copyOf(idDaLinha, qtdLinhas);
+            Arrays.parallelSort(ids);
+            int n = 0;
+            for (int l = 0; l < qtdLinhas; l++) {
+                if (n == 0 || ids[l] != ids[n - 1]) ids[n++] = ids[l];
+            }
+            ids = Arrays.copyOf(ids, n);
+            MapaDeIds mapa = new MapaDeIds(n);
+            for (int v = 0; v < n; v++) mapa.put(ids[v], v);
+
+            int[] linhaDoVertice = new int[n];
+            for (int l = 0; l < qtdLinhas; l++) linhaDoVertice[mapa.get(idDaLinha[l])] = l; // Vale a última linha do vértice
+
+            // As consultas ao mapa só leem, então as listas são convertidas em paralelo
+            int[] indiceDoVizinho = new int[qtdVizinhos]; // -1 para vizinhos sem linha no arquivo
+            IntStream.range(0, qtdVizinhos).parallel().forEach(i -> indiceDoVizinho[i] = mapa.get(vizinhos[i]));
+            long semLinha = IntStream.of(indiceDoVizinho).parallel().filter(w -> w < 0).count();
+
+            int[] offsets = new int[n + 1];
+            IntStream.range(0, n).parallel().forEach(v -> { // Conta os vizinhos válidos de cada vértice
+                int l = linhaDoVertice[v];
+                int grau = 0;
+                for (int i = inicioDaLinha[l]; i < inicioDaLinha[l + 1]; i++) {
+                    if (indiceDoVizinho[i] >= 0) grau++;
+                }
+                offsets[v + 1] = grau;
+            });
+            Arrays.parallelPrefix(offsets, Math::addExact);
+
+            int[] targets = new int[offsets[n]];
+            double[] pesosDosArcos = pesos == null ? null : new double[offsets[n]];
+            IntStream.range(0, n).parallel().forEach(v -> {
+                int l = linhaDoVertice[v];
+                int pos = offsets[v];
+                for (int i = inicioDaLinha[l]; i < inicioDaLinha[l + 1]; i++) {
+                    int w = indiceDoVizinho[i];
+                    if (w < 0) continue;
+                    if (pesosDosArcos != null) pesosDosArcos[pos] = pesos[i];
+                    targets[pos++] = w;
+                }
+            });
+            normalizacao = normaliza(offsets, targets, pesosDosArcos, semLinha);
+            return escolheRepresentacao(new GrafoCSR(normalizacao.getOffsets(), normalizacao.getTargets(), ids,
+                    Pesos.compacta(normalizacao.getPesos())));
+        }
+
+        /**
+         * @return As correções feitas pelo último <i>constroi</i>, ou null se ele não foi chamado.
+         */
+        public Normalizacao getNormalizacao() {
+            return normalizacao;
+        }
+
+        /**
+         * Função que junta construtores preenchidos separadamente, como se as linhas de todos
+         * tivessem sido adicionadas a um só, na ordem do vetor.
+         *
+         * <p>
+         *     A posição de cada parte no resultado vem da soma dos tamanhos das partes anteriores,
+         *     e as partes são copiadas em paralelo. Juntas, as partes também não podem passar de
+         *     <i>MAXIMO_DE_ELEMENTOS</i> linhas ou vizinhos, o mesmo limite de um só construtor.
+         * </p>
+         */
+        public static ConstrutorDeGrafo junta(ConstrutorDeGrafo[] partes) {
+            int[] primeiraLinha = new int[partes.length + 1];
+            int[] primeiroVizinho = new int[partes.length + 1];
+            for (int p = 0; p < partes.length; p++) {
+                long linhas = (long) primeiraLinha[p] + partes[p].qtdLinhas;
+                long vizinhos = (long) primeiroVizinho[p] + partes[p].qtdVizinhos;
+                if (linhas > MAXIMO_DE_ELEMENTOS) throw excedeLimiteDoHeap("vértices");
+                if (vizinhos > MAXIMO_DE_ELEMENTOS) throw excedeLimiteDoHeap("vizinhos nas listas");
+                primeiraLinha[p + 1] = (int) linhas;
+                primeiroVizinho[p + 1] = (int) vizinhos;
+            }
+
+            boolean comPesos = partes.length > 0 && partes[0].pesos != null;
+            ConstrutorDeGrafo junto = new ConstrutorDeGrafo();
+            junto.qtdLinhas = primeiraLinha[partes.length];
+            junto.qtdVizinhos = primeiroVizinho[partes.length];
+            junto.idDaLinha = new long[Math.max(16, junto.qtdLinhas)];
+            junto.inicioDaLinha = new int[junto.idDaLinha.length + 1];
+            junto.vizinhos = new long[Math.max(64, junto.qtdVizinhos)];
+            if (comPesos) junto.pesos = new double[junto.vizinhos.length];
+            IntStream.range(0, partes.length).parallel().forEach(p -> {
+                ConstrutorDeGrafo parte = partes[p];
+                System.arraycopy(parte.idDaLinha, 0, junto.idDaLinha, primeiraLinha[p], parte.qtdLinhas);
+                System.arraycopy(parte.vizinhos, 0, junto.vizinhos, primeiroVizinho[p], parte.qtdVizinhos);
+                if (comPesos) System.arraycopy(parte.pesos, 0, junto.pesos, primeiroVizinho[p], parte.qtdVizinhos);
+                for (int l = 0; l < parte.qtdLinhas; l++) {
+                    junto.inicioDaLinha[primeiraLinha[p] + l] = primeiroVizinho[p] + parte.inicioDaLinha[l];
+                }
+            });
+            return junto;
+        }
+    }
+
+    private static final double[] POTENCIAS_DE_10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    /**
+     * Função que converte os bytes [inicio, fim) de um número decimal (como "3", "-2.5" ou "1e-3").
+     *
+     * <p>
+     *     Números com até 15 dígitos e até 22 casas decimais, sem expoente, são convertidos direto:
+     *     os dígitos formam um long exato em double e uma única divisão pela potência de 10 (também
+     *     exata) dá o double mais próximo, o mesmo de Double.parseDouble. Os demais casos, raros
+     *     em arquivos de grafos, passam por Double.parseDouble.
+     * </p>
+     *
+     * @throws NumberFormatException Se os bytes não formam um número.
+     */
+    static double converteDecimal(byte[] bytes, int inicio, int fim) {
+        int i = inicio;
+        boolean negativo = i < fim && bytes[i] == '-';
+        if (i < fim && (bytes[i] == '-' || bytes[i] == '+')) i++;
+        long mantissa = 0;
+        int digitos = 0, casas = 0;
+        boolean ponto = false;
+        for (; i < fim; i++) {
+            int d = bytes[i] - '0';
+            if (d >= 0 && d <= 9) {
+                if (digitos < 18) mantissa = mantissa * 10 + d;
+                digitos++;
+                if (ponto) casas++;
+            } else if (bytes[i] == '.' && !ponto) {
+                ponto = true;
+            } else {
+                break;
+            }
+        }
+        if (i == fim && digitos > 0 && digitos <= 15 && casas < POTENCIAS_DE_10.length) {
+            double valor = mantissa / POTENCIAS_DE_10[casas];
+            return negativo ? -valor : valor;
+        }
+        return Double.parseDouble(new String(bytes, inicio, fim - inicio, StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * Classe que lê o formato "id = vizinhos" direto dos bytes do arquivo, sem criar Strings.
+     *
+     * <p>
+     *     Os bytes são consumidos bloco a bloco por <i>consome</i> e o estado do número e da linha
+     *     atual fica nos atributos, então uma linha pode começar em um bloco e terminar no próximo.
+     *     Cada número é acumulado dígito a dígito em um long e entregue ao <i>ConstrutorDeGrafo</i>.
+     *     Espaços, tabulações e '\r' separam os números e linhas vazias são ignoradas. Com pesos,
+     *     todo segundo número depois do '=' é o peso do vizinho anterior: os seus bytes são
+     *     guardados e convertidos por <i>converteDecimal</i> quando ele termina.
+     * </p>
+     */
+    static class AnalisadorDeTexto {
+        private static final long LIMITE = (Long.MAX_VALUE - 9) / 10;
+
+        private final ConstrutorDeGrafo construtor;
+        private final boolean weightedGraph;
+        private final long primeiroByte; // Onde começa o trecho lido, para as mensagens de erro
+        private long linha = 1;
+        private long numero;
+        private int digitos;
+        private boolean negativo;
+        private boolean emToken;      // Lendo um número (ou um peso) da linha
+        private boolean lendoPeso;    // O token atual é um peso, guardado em bytesDoPeso
+        private byte[] bytesDoPeso = new byte[32];
+        private int tamanhoDoPeso;
+        private long vizinho;         // Vizinho que espera o seu peso
+        private boolean temId;        // O número do vértice da linha já foi lido
+        private boolean depoisDoIgual;
+        private int qtdTokens;        // Tokens depois do '=' na linha atual
+
+        public AnalisadorDeTexto(ConstrutorDeGrafo construtor, boolean weightedGraph, long primeiroByte) {
+            this.construtor = construtor;
+            this.weightedGraph = weightedGraph;
+            this.primeiroByte = primeiroByte;
+        }
+
+        /**
+         * Função que consome os bytes entre position e limit do bloco (que não são alterados).
+         */
+        public void consome(ByteBuffer bloco) {
+            for (int i = bloco.position(), fim = bloco.limit(); i < fim; i++) {
+                byte b = bloco.get(i);
+                if (b == ' ' || b == '\t' || b == '\r') {
+                    terminaToken();
+                } else if (b == '\n') {
+                    terminaToken();
+                    terminaLinha();
+                } else if (b == '=' && !lendoPeso) {
+                    terminaToken();
+                    if (!temId || depoisDoIgual) throw erro("'=' inesperado");
+                    depoisDoIgual = true;
+                } else {
+                    if (!emToken) comecaToken();
+                    if (lendoPeso) {
+                        if (tamanhoDoPeso == bytesDoPeso.length) bytesDoPeso = Arrays.copyOf(bytesDoPeso, 2 * tamanhoDoPeso);
+                        bytesDoPeso[tamanhoDoPeso++] = b;
+                    } else if (b >= '0' && b <= '9') {
+                        if (numero > LIMITE) throw erro("número muito grande");
+                        numero = numero * 10 + (b - '0');
+                        digitos++;
+                    } else if (b == '-' && digitos == 0 && !negativo) {
+                        negativo = true;
+                    } else {
+                        throw erro("caractere inválido '" + (char) (b & 0xFF) + "'");
+                    }
+                }
+            }
+        }
+
+        /**
+         * Função que termina a última linha, que pode não ter '\n' no final do arquivo.
+         */
+        public void termina() {
+            terminaToken();
+            terminaLinha();
+        }
+
+        private void comecaToken() {
+            emToken = true;
+            if (depoisDoIgual) {
+                qtdTokens++;
+                lendoPeso = weightedGraph && qtdTokens % 2 == 0;
+            }
+        }
+
+        private void terminaToken() {
+            if (!emToken) return;
+            emToken = false;
+            if (lendoPeso) {
+                lendoPeso = false;
+                double peso;
+                try {
+                    peso = converteDecimal(bytesDoPeso, 0, tamanhoDoPeso);
+                } catch (NumberFormatException e) {
+                    throw erro("peso inválido");
+                }
+                tamanhoDoPeso = 0;
+                construtor.adicionaVizinho(vizinho, peso);
+                return;
+            }
+            if (digitos == 0) throw erro("número inválido");
+            long valor = negativo ? -numero : numero;
+            numero = 0;
+            digitos = 0;
+            negativo = false;
+
+            if (depoisDoIgual) {
+                if (weightedGraph) vizinho = valor; // Adicionado quando o peso terminar
+                else construtor.adicionaVizinho(valor);
+            } else {
+                if (temId) throw erro("falta o '=' depois do número do vértice");
+                construtor.adicionaVertice(valor);
+                temId = true;
+            }
+        }
+
+        private void terminaLinha() {
+            if (depoisDoIgual && !temId) throw erro("falta o número do vértice");
+            if (weightedGraph && qtdTokens % 2 == 1) throw erro("falta o peso do último vizinho");
+            temId = false;
+            depoisDoIgual = false;
+            qtdTokens = 0;
+            linha++;
+        }
+
+        private NumberFormatException erro(String mensagem) {
+            if (primeiroByte == 0) return new NumberFormatException("Linha " + linha + ": " + mensagem);
+            return new NumberFormatException("Linha " + linha + " do trecho que começa no byte " + primeiroByte + ": " + mensagem);
+        }
+    }
+
+    static final long BYTES_POR_TRECHO = 1 << 22; // Tamanho mínimo de cada trecho lido em paralelo
+
+    /**
+     * Função que lê o arquivo "id = vizinhos" mapeando-o na memória.
+     *
+     * <p>
+     *     Os bytes do arquivo são lidos direto do mapeamento pelo <i>AnalisadorDeTexto</i>, sem
+     *     BufferedReader, sem uma String por linha e sem split, trim ou parseLong por número.
+     * </p>
+     * <p>
+     *     Arquivos grandes são divididos em trechos de pelo menos <i>BYTES_POR_TRECHO</i> bytes,
+     *     alguns por núcleo. O início de cada trecho é avançado até depois do próximo '\n', então
+     *     cada linha pertence ao trecho em que começa. Cada trecho é lido em paralelo para o seu
+     *     próprio <i>ConstrutorDeGrafo</i> e as partes são juntadas em ordem, o que mantém a regra
+     *     de que vale a última linha de um vértice repetido. Um erro em um trecho é lançado na
+     *     thread que chamou, com a sua mensagem; se vários trechos falham, vale o primeiro do arquivo.
+     * </p>
+     * <p>
+     *     O mapeamento usa posições long, então o tamanho do arquivo não é o limite. O limite são
+     *     os vetores do heap: o arquivo pode ter no máximo <i>MAXIMO_DE_ELEMENTOS</i> (2^31 - 9)
+     *     linhas e vizinhos somando todas as listas, e o grafo construído no máximo 2^31 - 1 arcos
+     *     depois de simetrizado, porque os offsets do <i>GrafoCSR</i> são int. Com pesos double,
+     *     as listas sozinhas já passam de 30 GB de heap. Passar de um dos limites termina com uma
+     *     IllegalStateException ou ArithmeticException e uma mensagem clara (ver <i>abreGrafo</i>);
+     *     grafos maiores precisam ser montados em disco por <i>ConstrutorForaDoHeap</i>.
+     * </p>
+     *
+     * @param arquivo Caminho do arquivo.
+     * @param weightedGraph Se cada vizinho é seguido pelo peso da aresta.
+     * @return O construtor com a lista de cada linha (e os pesos, se <i>weightedGraph</i>).
+     */
+    static ConstrutorDeGrafo leGrafoMapeado(Path arquivo, boolean weightedGraph) throws IOException {
+        return leGrafoMapeado(arquivo, weightedGraph, BYTES_POR_TRECHO);
+    }
+
+    /**
+     * Função igual a <i>leGrafoMapeado</i>, mas com trechos de pelo menos <i>bytesPorTrecho</i> bytes.
+     * O autoteste usa trechos pequenos para dividir arquivos pequenos.
+     */
+    static ConstrutorDeGrafo leGrafoMapeado(Path arquivo, boolean weightedGraph, long bytesPorTrecho) throws IOException {
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+            long tamanho = canal.size();
+            MemoriaForaDoHeap memoria = MemoriaForaDoHeap.mapeia(canal, FileChannel.MapMode.READ_ONLY, tamanho);
+
+            int qtdTrechos = (int) Math.max(1, Math.min(4L * ForkJoinPool.getCommonPoolParallelism(), tamanho / bytesPorTrecho));
+            long[] inicio = new long[qtdTrechos + 1];
+            inicio[qtdTrechos] = tamanho;
+            for (int t = 1; t < qtdTrechos; t++) {
+                long pos = Math.max(inicio[t - 1], tamanho / qtdTrechos * t);
+                while (pos < tamanho && memoria.getByte(pos - 1) != '\n') pos++;
+                inicio[t] = pos;
+            }
+
+            ConstrutorDeGrafo[] partes = new ConstrutorDeGrafo[qtdTrechos];
+            RuntimeException[] erros = new RuntimeException[qtdTrechos];
+            IntStream.range(0, qtdTrechos).parallel().forEach(t -> {
+                try {
+                    partes[t] = new ConstrutorDeGrafo(weightedGraph);
+                    AnalisadorDeTexto analisador = new AnalisadorDeTexto(partes[t], weightedGraph, inicio[t]);
+                    memoria.percorre(inicio[t], inicio[t + 1], analisador::consome);
+                    analisador.termina();
+                } catch (RuntimeException e) {
+                    // O ForkJoin relança uma cópia que, para NumberFormatException, perde a mensagem
+                    erros[t] = e;
+                }
+            });
+            for (RuntimeException erro : erros) {
+                if (erro != null) throw erro;
+            }
+            return qtdTrechos == 1 ? partes[0] : ConstrutorDeGrafo.junta(partes);
+        }
+    }
+
+    /**
+     * Função que lê o formato "id = vizinhos" de um InputStream, em sequência, com o mesmo
+     * <i>AnalisadorDeTexto</i> de <i>leGrafoMapeado</i>. Serve para arquivos que não podem ser
+     * mapeados, como os comprimidos.
+     */
+    static ConstrutorDeGrafo leGrafoDeEntrada(InputStream entrada, boolean weightedGraph) throws IOException {
+        ConstrutorDeGrafo construtor = new ConstrutorDeGrafo(weightedGraph);
+        AnalisadorDeTexto analisador = new AnalisadorDeTexto(construtor, weightedGraph, 0);
+        byte[] pedaco = new byte[1 << 16];
+        ByteBuffer bloco = ByteBuffer.wrap(pedaco);
+        for (int qtd = entrada.read(pedaco); qtd >= 0; qtd = entrada.read(pedaco)) {
+            bloco.clear().limit(qtd);
+            analisador.consome(bloco);
+        }
+        analisador.termina();
+        return construtor;
+    }
+
+    /**
+     * Classe que lê um InputStream linha a linha direto em um vetor de bytes, sem criar Strings.
+     *
+     * <p>
+     *     A linha atual é o trecho [inicio, fim) do buffer, sem o '\n' e sem o '\r' do final, e é
+     *     válida até a próxima chamada de <i>proxima</i>. As funções de token percorrem a linha com
+     *     um cursor e tratam espaços, tabulações e vírgulas como separadores. O buffer cresce
+     *     quando uma linha não cabe nele, então linhas longas (como as de graph6) funcionam.
+     * </p>
+     */
+    static class LeitorDeLinhas {
+        private final InputStream entrada;
+        private byte[] buffer = new byte[1 << 16];
+        private int lidos;        // Bytes válidos no buffer
+        private int proximaLinha; // Onde começa a próxima linha
+        private int varrido;      // Até onde o buffer já foi procurado por '\n'
+        private boolean acabou;
+        private int inicio, fim, posicao;
+        private long numeroDaLinha;
+
+        public LeitorDeLinhas(InputStream entrada) {
+            this.entrada = entrada;
+        }
+
+        /**
+         * Função que avança para a próxima linha.
+         *
+         * @return false se o arquivo acabou.
+         */
+        public boolean proxima() throws IOException {
+            while (true) {
+                for (; varrido < lidos; varrido++) {
+                    if (buffer[varrido] == '\n') {
+                        define(proximaLinha, varrido);
+                        proximaLinha = ++varrido;
+                        return true;
+                    }
+                }
+                if (acabou) {
+                    if (proximaLinha == lidos) return false;
+                    define(proximaLinha, lidos); // Última linha sem '\n'
+                    proximaLinha = lidos;
+                    return true;
+                }
+                enche();
+            }
+        }
+
+        private void define(int inicio, int fim) {
+            if (fim > inicio && buffer[fim - 1] == '\r') fim--;
+            this.inicio = inicio;
+            this.fim = fim;
+            this.posicao = inicio;
+            numeroDaLinha++;
+        }
+
+        private void enche() throws IOException {
+            if (proximaLinha > 0) { // Move a linha incompleta para o começo do buffer
+                System.arraycopy(buffer, proximaLinha, buffer, 0, lidos - proximaLinha);
+                lidos -= proximaLinha;
+                varrido -= proximaLinha;
+                proximaLinha = 0;
+            }
+            if (lidos == buffer.length) buffer = Arrays.copyOf(buffer, 2 * buffer.length);
+            int qtd = entrada.read(buffer, lidos, buffer.length - lidos);
+            if (qtd < 0) acabou = true;
+            else lidos += qtd;
+        }
+
+        private static boolean separador(byte b) {
+            return b == ' ' || b == '\t' || b == ',';
+        }
+
+        /**
+         * Função que pula os separadores.
+         *
+         * @return O primeiro byte do próximo token, ou -1 se a linha acabou.
+         */
+        public int proximoByte() {
+            while (posicao < fim && separador(buffer[posicao])) posicao++;
+            return posicao < fim ? buffer[posicao] : -1;
+        }
+
+        public void pulaToken() {
+            if (proximoByte() < 0) throw erro("faltam valores na linha");
+            while (posicao < fim && !separador(buffer[posicao])) posicao++;
+        }
+
+        public long proximoLong() {
+            if (proximoByte() < 0) throw erro("faltam valores na linha");
+            boolean negativo = buffer[posicao] == '-';
+            if (negativo) posicao++;
+            long numero = 0;
+            int digitos = 0;
+            for (; posicao < fim && !separador(buffer[posicao]); posicao++, digitos++) {
+                int d = buffer[posicao] - '0';
+                if (d < 0 || d > 9) throw erro("número inválido");
+                if (numero > (Long.MAX_VALUE - 9) / 10) throw erro("número muito grande");
+                numero = numero * 10 + d;
+            }
+            if (digitos == 0) throw erro("número inválido");
+            return negativo ? -numero : numero;
+        }
+
+        public double proximoDouble() {
+            if (proximoByte() < 0) throw erro("faltam valores na linha");
+            int comeco = posicao;
+            while (posicao < fim && !separador(buffer[posicao])) posicao++;
+            try {
+                return converteDecimal(buffer, comeco, posicao);
+            } catch (NumberFormatException e) {
+                throw erro("número inválido");
+            }
+        }
+
+        public byte[] getBuffer() {
+            return buffer;
+        }
+
+        public int getInicio() {
+            return inicio;
+        }
+
+        public int getFim() {
+            return fim;
+        }
+
+        public NumberFormatException erro(String mensagem) {
+            return new NumberFormatException("Linha " + numeroDaLinha + ": " + mensagem);
+        }
+    }
+
+    /**
+     * Interface dos construtores que recebem o grafo aresta por aresta (ver <i>ConstrutorPorArestas</i>
+     * e <i>ConstrutorForaDoHeap</i>).
+     */
+    interface DestinoDeArestas {
+        /**
+         * Função que adiciona um vértice, que pode não ter arestas.
+         */
+        DestinoDeArestas adicionaVertice(long id);
+
+        DestinoDeArestas adicionaAresta(long u, long v);
+
+        DestinoDeArestas adicionaAresta(long u, long v, double peso);
+    }
+
+    /**
+     * Classe para montar o grafo a partir de uma lista de arestas, com vértices de qualquer número.
+     *
+     * <p>
+     *     Cada aresta vira os dois arcos, então a lista pode ter cada aresta uma vez ou nos dois
+     *     sentidos. Só a mesma aresta listada de novo no mesmo sentido conta como repetição em
+     *     <i>getNormalizacao</i>; o segundo sentido de uma lista simétrica não é uma correção. Como no
+     *     <i>ConstrutorDeGrafo</i>, os índices seguem a ordem crescente dos números originais e os
+     *     vetores são montados com uma soma de prefixos, em paralelo.
+     * </p>
+     */
+    static class ConstrutorPorArestas implements DestinoDeArestas {
+        private long[] vertices = new long[16];
+        private long[] extremos = new long[64]; // As duas pontas de cada aresta, em sequência
+        private double[] pesos;                 // Peso de cada aresta, null se o grafo não tem pesos
+        private int qtdVertices, qtdExtremos;
+        private Normalizacao normalizacao;
+
+        public ConstrutorPorArestas() {
+            this(false);
+        }
+
+        /**
+         * @param comPesos Se cada aresta é adicionada com o seu peso.
+         */
+        public ConstrutorPorArestas(boolean comPesos) {
+            if (comPesos) pesos = new double[extremos.length / 2];
+        }
+
+        /**
+         * Função que adiciona um vértice, que pode não ter arestas.
+         */
+        public ConstrutorPorArestas adicionaVertice(long id) {
+            if (qtdVertices == vertices.length) vertices = Arrays.copyOf(vertices, dobraCapacidade(qtdVertices, "vértices"));
+            vertices[qtdVertices++] = id;
+            return this;
+        }
+
+        public ConstrutorPorArestas adicionaAresta(long u, long v) {
+            if (pesos != null) throw new IllegalStateException("O grafo tem pesos, falta o peso da aresta " + u + " " + v);
+            adiciona(u, v);
+            return this;
+        }
+
+        public ConstrutorPorArestas adicionaAresta(long u, long v, double peso) {
+            if (pesos == null) throw new IllegalStateException("O construtor foi criado sem pesos");
+            int aresta = adiciona(u, v); // Antes de usar pesos, que pode ter sido realocado
+            pesos[aresta] = peso;
+            return this;
+        }
+
+        private int adiciona(long u, long v) {
+            if (qtdExtremos >= extremos.length - 1) { // Cabem as duas pontas mesmo com um tamanho ímpar no limite
+                extremos = Arrays.copyOf(extremos, dobraCapacidade(extremos.length, "pontas de arestas"));
+                if (pesos != null) pesos = Arrays.copyOf(pesos, extremos.length / 2);
+            }
+            extremos[qtdExtremos++] = u;
+            extremos[qtdExtremos++] = v;
+            return qtdExtremos / 2 - 1;
+        }
+
+        /**
+         * Função que monta o grafo com as arestas adicionadas até agora.
+         *
+         * @return O grafo, no formato escolhido por <i>escolheRepresentacao</i>.
+         */
+        public Grafo constroi() {
+            long[] ids = new long[Math.addExact(qtdVertices, qtdExtremos)];
+            System.arraycopy(vertices, 0, ids, 0, qtdVertices);
+            System.arraycopy(extremos, 0, ids, qtdVertices, qtdExtremos);
+            Arrays.parallelSort(ids);
+            int n = 0;
+            for (int i = 0; i < ids.length; i++) {
+                if (n == 0 || ids[i] != ids[n - 1]) ids[n++] = ids[i];
+            }
+            ids = Arrays.copyOf(ids, n);
+            MapaDeIds mapa = new MapaDeIds(n);
+            for (int v = 0; v < n; v++) mapa.put(ids[v], v);
+
+            int[] indice = new int[qtdExtremos];
+            IntStream.range(0, qtdExtremos).parallel().forEach(i -> indice[i] = mapa.get(extremos[i]));
+
+            int[] offsets = new int[n + 1];
+            for (int i = 0; i < qtdExtremos; i += 2) { // Um laço vira um só arco
+                offsets[indice[i] + 1]++;
+                if (indice[i] != indice[i + 1]) offsets[indice[i + 1] + 1]++;
+            }
+            Arrays.parallelPrefix(offsets, Math::addExact);
+
+            int[] targets = new int[offsets[n]];
+            double[] pesosDosArcos = pesos == null ? null : new double[offsets[n]];
+            int[] proximo = Arrays.copyOf(offsets, n);
+            for (int i = 0; i < qtdExtremos; i += 2) {
+                int u = indice[i], v = indice[i + 1];
+                if (pesosDosArcos != null) {
+                    pesosDosArcos[proximo[u]] = pesos[i / 2];
+                    if (u != v) pesosDosArcos[proximo[v]] = pesos[i / 2];
+                }
+                targets[proximo[u]++] = v;
+                if (u != v) targets[proximo[v]++] = u;
+            }
+            normalizacao = normaliza(offsets, targets, pesosDosArcos, 0);
+            if (normalizacao.getRepetidos() > 0) { // Parte das repetições pode ser só o sentido contrário
+                normalizacao = new Normalizacao(normalizacao.getOffsets(), normalizacao.getTargets(),
+                        normalizacao.getPesos(), normalizacao.getLacos(), arestasRepetidas(indice),
+                        normalizacao.getArestasDeVolta(), normalizacao.getPesosEmConflito() / 2, // Cada aresta repete nas duas listas
+                        normalizacao.getVizinhosSemLinha());
+            }
+            return escolheRepresentacao(new GrafoCSR(normalizacao.getOffsets(), normalizacao.getTargets(), ids,
+                    Pesos.compacta(normalizacao.getPesos())));
+        }
+
+        /**
+         * Função que conta as arestas listadas de novo no mesmo sentido (u v duas vezes, mas não
+         * u v seguida de v u). Cada aresta, sem os laços, vira a chave u << 32 | v e as chaves
+         * iguais ficam vizinhas depois da ordenação.
+         *
+         * @param indice Índice das duas pontas de cada aresta, em sequência.
+         */
+        private static long arestasRepetidas(int[] indice) {
+            long[] chaves = new long[indice.length / 2];
+            int qtd = 0;
+            for (int i = 0; i < indice.length; i += 2) {
+                if (indice[i] != indice[i + 1]) chaves[qtd++] = ((long) indice[i] << 32) | indice[i + 1];
+            }
+            Arrays.parallelSort(chaves, 0, qtd);
+            long repetidas = 0;
+            for (int i = 1; i < qtd; i++) {
+                if (chaves[i] == chaves[i - 1]) repetidas++;
+            }
+            return repetidas;
+        }
+
+        /**
+         * @return As correções feitas pelo último <i>constroi</i>, ou null se ele não foi chamado.
+         */
+        public Normalizacao getNormalizacao() {
+            return normalizacao;
+        }
+    }
+
+    /**
+     * Função que lê uma lista de arestas, uma por linha: "u v", separados por espaços, tabulações
+     * ou vírgula. Linhas vazias ou que começam com '#' ou '%' são ignoradas e uma linha com um só
+     * número adiciona um vértice isolado. Com <i>weightedGraph</i> o terceiro valor é o peso da
+     * aresta, senão os valores depois do segundo são ignorados.
+     */
+    static ConstrutorPorArestas leListaDeArestas(LeitorDeLinhas leitor, boolean weightedGraph) throws IOException {
+        return leListaDeArestas(leitor, weightedGraph, new ConstrutorPorArestas(weightedGraph));
+    }
+
+    /**
+     * Função que lê a lista de arestas para um destino qualquer (ver <i>converteParaCsr</i>).
+     */
+    static <D extends DestinoDeArestas> D leListaDeArestas(LeitorDeLinhas leitor, boolean weightedGraph, D construtor) throws IOException {
+        while (leitor.proxima()) {
+            int primeiro = leitor.proximoByte();
+            if (primeiro < 0 || primeiro == '#' || primeiro == '%') continue;
+            long u = leitor.proximoLong();
+            if (leitor.proximoByte() < 0) {
+                construtor.adicionaVertice(u);
+                continue;
+            }
+            long v = leitor.proximoLong();
+            if (weightedGraph) construtor.adicionaAresta(u, v, leitor.proximoDouble());
+            else construtor.adicionaAresta(u, v);
+        }
+        return construtor;
+    }
+
+    /**
+     * Função que lê um arquivo DIMACS (.col): comentários "c ...", a linha "p edge n m" e as
+     * arestas "e u v", com vértices de 1 a n. Outras linhas (como "n v peso") são ignoradas.
+     */
+    static ConstrutorPorArestas leDimacs(LeitorDeLinhas leitor) throws IOException {
+        return leDimacs(leitor, new ConstrutorPorArestas());
+    }
+
+    /**
+     * Função que lê o arquivo DIMACS para um destino qualquer (ver <i>converteParaCsr</i>).
+     */
+    static <D extends DestinoDeArestas> D leDimacs(LeitorDeLinhas leitor, D construtor) throws IOException {
+        long n = -1;
+        while (leitor.proxima()) {
+            int tipo = leitor.proximoByte();
+            if (tipo == 'p') {
+                if (n >= 0) throw leitor.erro("mais de uma linha 'p'");
+                leitor.pulaToken();
+                leitor.pulaToken(); // Formato, normalmente "edge" ou "col"
+                n = leitor.proximoLong();
+                if (n < 0 || n >= Integer.MAX_VALUE) throw leitor.erro("quantidade de vértices inválida");
+                for (long v = 1; v <= n; v++) construtor.adicionaVertice(v);
+            } else if (tipo == 'e') {
+                if (n < 0) throw leitor.erro("aresta antes da linha 'p'");
+                leitor.pulaToken();
+                long u = leitor.proximoLong(), v = leitor.proximoLong();
+                if (u < 1 || u > n || v < 1 || v > n) throw leitor.erro("vértice fora de 1.." + n);
+                construtor.adicionaAresta(u, v);
+            }
+        }
+        if (n < 0) throw leitor.erro("falta a linha 'p'");
+        return construtor;
+    }
+
+    /**
+     * Classe que só guarda o menor e o maior número de vértice lido, a primeira passada de
+     * <i>converteParaCsr</i>.
+     */
+    private static class FaixaDeIds implements DestinoDeArestas {
+        private long menor = Long.MAX_VALUE, maior = Long.MIN_VALUE;
+
+        public FaixaDeIds adicionaVertice(long id) {
+            menor = Math.min(menor, id);
+            maior = Math.max(maior, id);
+            return this;
+        }
+
+        public FaixaDeIds adicionaAresta(long u, long v) {
+            return adicionaVertice(u).adicionaVertice(v);
+        }
+
+        public FaixaDeIds adicionaAresta(long u, long v, double peso) {
+            return adicionaAresta(u, v);
+        }
+    }
+
+    /**
+     * Função para converter uma lista de arestas ou um arquivo DIMACS em um arquivo .csr sem
+     * montar o grafo no heap.
+     *
+     * <p>
+     *     O arquivo é lido três vezes, em streaming e descomprimido por <i>abreEntrada</i>: a
+     *     primeira acha a faixa dos números dos vértices, a segunda conta os graus e a terceira
+     *     grava as arestas (ver <i>ConstrutorForaDoHeap</i>). Assim o grafo pode ter mais de
+     *     2^31 arcos, que os offsets long do .csr comportam e os vetores do heap não.
+     *
+     *     Os vértices são todos os números de menor a maior, então um número que não aparece no
+     *     arquivo vira um vértice isolado, o que não muda se o grafo é P4-esparso. Ao contrário de
+     *     <i>abreGrafo</i>, a faixa precisa ter menos de 2^31 - 1 números. Os laços são descartados
+     *     e as arestas repetidas ficam uma só, com o peso da primeira.
+     * </p>
+     *
+     * @param entrada Caminho da lista de arestas ou do arquivo DIMACS.
+     * @param formato "arestas" ou "dimacs".
+     * @param weightedGraph Se o terceiro valor de cada aresta é o peso (só para "arestas").
+     * @param saida Arquivo .csr, que é criado ou sobrescrito.
+     * @return O grafo, mapeado do arquivo gravado.
+     */
+    static GrafoForaDoHeap converteParaCsr(Path entrada, String formato, boolean weightedGraph, Path saida) throws IOException {
+        if (!formato.equals("arestas") && !formato.equals("dimacs")) {
+            throw new IllegalArgumentException("Só listas de arestas e arquivos DIMACS são convertidos em streaming, não " + formato);
+        }
+        boolean comPesos = weightedGraph && formato.equals("arestas");
+        FaixaDeIds faixa = leArestas(entrada, formato, comPesos, new FaixaDeIds());
+        long n = faixa.maior < faixa.menor ? 0 : faixa.maior - faixa.menor + 1;
+        if (n < 0 || n >= Integer.MAX_VALUE) {
+            throw new IllegalStateException("Os vértices vão de " + faixa.menor + " a " + faixa.maior + ", mais que o limite de um int");
+        }
+        try (ConstrutorForaDoHeap construtor = new ConstrutorForaDoHeap(saida, (int) n, n == 0 ? 0 : faixa.menor, comPesos)) {
+            leArestas(entrada, formato, comPesos, construtor);
+            construtor.comecaGravacao();
+            leArestas(entrada, formato, comPesos, construtor);
+            return construtor.termina();
+        }
+    }
+
+    private static <D extends DestinoDeArestas> D leArestas(Path entrada, String formato, boolean weightedGraph, D destino) throws IOException {
+        try (InputStream fluxo = abreEntrada(entrada)) {
+            LeitorDeLinhas leitor = new LeitorDeLinhas(fluxo);
+            return formato.equals("dimacs") ? leDimacs(leitor, destino) : leListaDeArestas(leitor, weightedGraph, destino);
+        }
+    }
+
+    /**
+     * Função que lê um arquivo METIS: a linha "n m [fmt [ncon]]" e depois uma linha por vértice
+     * (de 1 a n, vazia se ele não tem vizinhos) com os seus vizinhos. Linhas que começam com '%'
+     * são comentários.
+     *
+     * <p>
+     *     Os dígitos de fmt dizem se cada linha começa com o tamanho do vértice (centena) e com
+     *     ncon pesos do vértice (dezena) e se cada vizinho é seguido pelo peso da aresta
+     *     (unidade). Os pesos das arestas são guardados com <i>weightedGraph</i> e os demais
+     *     valores são pulados. Um vizinho fora de 1..n é um erro, como em <i>leDimacs</i>.
+     * </p>
+     */
+    static ConstrutorDeGrafo leMetis(LeitorDeLinhas leitor, boolean weightedGraph) throws IOException {
+        if (!proximaLinhaMetis(leitor)) throw leitor.erro("falta o cabeçalho");
+        long n = leitor.proximoLong();
+        leitor.proximoLong(); // Quantidade de arestas
+        long fmt = leitor.proximoByte() >= 0 ? leitor.proximoLong() : 0;
+        boolean temTamanho = fmt / 100 % 10 == 1, temPesoVertice = fmt / 10 % 10 == 1, temPesoAresta = fmt % 10 == 1;
+        long ncon = leitor.proximoByte() >= 0 ? leitor.proximoLong() : temPesoVertice ? 1 : 0;
+        if (!temPesoVertice) ncon = 0;
+
+        boolean comPesos = weightedGraph && temPesoAresta;
+        ConstrutorDeGrafo construtor = new ConstrutorDeGrafo(comPesos);
+        for (long v = 1; v <= n; v++) {
+            if (!proximaLinhaMetis(leitor)) throw leitor.erro("o arquivo tem menos de " + n + " vértices");
+            construtor.adicionaVertice(v);
+            if (temTamanho) leitor.pulaToken();
+            for (long c = 0; c < ncon; c++) leitor.pulaToken();
+            while (leitor.proximoByte() >= 0) {
+                long w = leitor.proximoLong();
+                if (w < 1 || w > n) throw leitor.erro("vizinho fora de 1.." + n);
+                if (comPesos) construtor.adicionaVizinho(w, leitor.proximoDouble());
+                else construtor.adicionaVizinho(w);
+                if (temPesoAresta && !comPesos) leitor.pulaToken();
+            }
+        }
+        return construtor;
+    }
+
+    private static boolean proximaLinhaMetis(LeitorDeLinhas leitor) throws IOException {
+        while (leitor.proxima()) {
+            if (leitor.proximoByte() != '%') return true;
+        }
+        return false;
+    }
+
+    /**
+     * Função que lê o próximo grafo de uma coleção em graph6 ou sparse6 (um grafo por linha).
+     *
+     * <p>
+     *     O cabeçalho opcional ">>graph6<<" ou ">>sparse6<<" e linhas vazias são ignorados. Linhas
+     *     que começam com ':' estão em sparse6 e as demais em graph6, então os dois formatos podem
+     *     estar misturados no mesmo arquivo. Os vértices são numerados de 0 a n-1.
+     * </p>
+     *
+     * @return O grafo, ou null se o arquivo acabou.
+     */
+    static Grafo proximoGrafoDaColecao(LeitorDeLinhas leitor) throws IOException {
+        while (leitor.proxima()) {
+            byte[] dados = leitor.getBuffer();
+            int inicio = leitor.getInicio(), fim = leitor.getFim();
+            if (fim - inicio >= 10 && dados[inicio] == '>' && dados[inicio + 1] == '>') { // >>graph6<< ou >>sparse6<<
+                inicio += dados[inicio + 2] == 's' ? 11 : 10;
+            }
+            if (inicio >= fim) continue;
+            if (dados[inicio] == ';') throw leitor.erro("sparse6 incremental não é suportado");
+            return dados[inicio] == ':' ? grafoDeSparse6(leitor, dados, inicio + 1, fim) : grafoDeGraph6(leitor, dados, inicio, fim);
+        }
+        return null;
+    }
+
+    /**
+     * @return Quantos bytes ocupa o número de vértices N(n) que começa em <i>inicio</i>.
+     */
+    private static int bytesDoTamanho(byte[] dados, int inicio, int fim) {
+        if (dados[inicio] != 126) return 1;
+        return inicio + 1 < fim && dados[inicio + 1] == 126 ? 8 : 4;
+    }
+
+    /**
+     * Função que decodifica N(n): 1, 3 ou 6 bytes de 6 bits (valor + 63) depois dos 126 iniciais.
+     */
+    private static long tamanhoDoGrafo(LeitorDeLinhas leitor, byte[] dados, int inicio, int fim) {
+        int bytes = bytesDoTamanho(dados, inicio, fim);
+        int primeiro = bytes == 1 ? inicio : inicio + bytes - (bytes == 4 ? 3 : 6);
+        if (inicio + bytes > fim) throw leitor.erro("número de vértices incompleto");
+        long n = 0;
+        for (int i = primeiro; i < inicio + bytes; i++) n = (n << 6) | seisBits(leitor, dados[i]);
+        if (n >= Integer.MAX_VALUE) throw leitor.erro("grafo grande demais");
+        return n;
+    }
+
+    private static int seisBits(LeitorDeLinhas leitor, byte b) {
+        if (b < 63 || b > 126) throw leitor.erro("byte inválido " + b);
+        return b - 63;
+    }
+
+    /**
+     * Função que decodifica uma linha em graph6 direto na matriz de adjacência em bits.
+     *
+     * <p>
+     *     Depois de N(n) vêm os bits do triângulo superior da matriz, coluna por coluna
+     *     (x(0,1), x(0,2), x(1,2), x(0,3), ...), 6 por byte do mais alto para o mais baixo.
+     * </p>
+     */
+    private static Grafo grafoDeGraph6(LeitorDeLinhas leitor, byte[] dados, int inicio, int fim) {
+        int n = (int) tamanhoDoGrafo(leitor, dados, inicio, fim);
+        int p = inicio + bytesDoTamanho(dados, inicio, fim);
+        long bitsNecessarios = (long) n * (n - 1) / 2;
+        if (fim - p < (bitsNecessarios + 5) / 6) throw leitor.erro("linha graph6 incompleta");
+        int palavras = (n + 63) >>> 6;
+        if ((long) n * palavras > Integer.MAX_VALUE - 8) throw leitor.erro("grafo grande demais");
+
+        long[] linhas = new long[n * palavras];
+        int valor = 0, bit = -1;
+        for (int j = 1; j < n; j++) {
+            for (int i = 0; i < j; i++) {
+                if (bit < 0) {
+                    valor = seisBits(leitor, dados[p++]);
+                    bit = 5;
+                }
+                if ((valor >>> bit-- & 1) != 0) {
+                    linhas[i * palavras + (j >>> 6)] |= 1L << j;
+                    linhas[j * palavras + (i >>> 6)] |= 1L << i;
+                }
+            }
+        }
+        return new GrafoDenso(n, linhas, null);
+    }
+
+    /**
+     * Função que decodifica uma linha em sparse6 (sem o ':' inicial).
+     *
+     * <p>
+     *     Depois de N(n) vem uma sequência de pares (b, x) com b de 1 bit e x de k bits, onde k é a
+     *     quantidade de bits de n-1. Começando com v = 0: se b = 1, v aumenta; se x > v, v passa a
+     *     ser x, senão a aresta {x, v} existe. A leitura para quando v chega a n ou quando não há
+     *     bits para mais um par (o final da linha é completado com bits 1).
+     * </p>
+     */
+    private static Grafo grafoDeSparse6(LeitorDeLinhas leitor, byte[] dados, int inicio, int fim) {
+        int n = (int) tamanhoDoGrafo(leitor, dados, inicio, fim);
+        int p = inicio + bytesDoTamanho(dados, inicio, fim);
+        int k = 32 - Integer.numberOfLeadingZeros(Math.max(0, n - 1));
+
+        int[] extremos = new int[16];
+        int qtdExtremos = 0;
+        int valor = 0, bits = 0; // Bits ainda não usados do byte atual
+        long v = 0;
+        while ((long) (fim - p) * 6 + bits >= 1 + k) {
+            if (bits == 0) {
+                valor = seisBits(leitor, dados[p++]);
+                bits = 6;
+            }
+            boolean b = (valor >>> --bits & 1) != 0;
+            long x = 0;
+            for (int i = 0; i < k; i++) {
+                if (bits == 0) {
+                    valor = seisBits(leitor, dados[p++]);
+                    bits = 6;
+                }
+                x = (x << 1) | (valor >>> --bits & 1);
+            }
+            if (b) v++;
+            if (v >= n) break;
+            if (x > v) {
+                v = x;
+            } else {
+                if (qtdExtremos == extremos.length) extremos = Arrays.copyOf(extremos, 2 * qtdExtremos);
+                extremos[qtdExtremos++] = (int) x;
+                extremos[qtdExtremos++] = (int) v;
+            }
+        }
+
+        int[] offsets = new int[n + 1];
+        for (int i = 0; i < qtdExtremos; i += 2) {
+            offsets[extremos[i] + 1]++;
+            if (extremos[i] != extremos[i + 1]) offsets[extremos[i + 1] + 1]++;
+        }
+        for (int u = 0; u < n; u++) offsets[u + 1] += offsets[u];
+        int[] targets = new int[offsets[n]];
+        int[] proximo = Arrays.copyOf(offsets, n);
+        for (int i = 0; i < qtdExtremos; i += 2) {
+            int a = extremos[i], c = extremos[i + 1];
+            targets[proximo[a]++] = c;
+            if (a != c) targets[proximo[c]++] = a;
+        }
+        Normalizacao normalizacao = normaliza(offsets, targets, 0);
+        return escolheRepresentacao(new GrafoCSR(normalizacao.getOffsets(), normalizacao.getTargets()));
+    }
+
+    /**
+     * Função para traduzir índices de vértices do grafo para os números originais do arquivo.
+     *
+     * @param grafo Grafo de onde vieram os índices.
+     * @param vertices Índices dos vértices.
+     * @return Os números dos vértices, na mesma ordem.
+     */
+    static long[] idsOriginais(Grafo grafo, int[] vertices) {
+        long[] ids = new long[vertices.length];
+        for (int i = 0; i < vertices.length; i++) ids[i] = grafo.getId(vertices[i]);
+        return ids;
+    }
+
+    /**
+     * Função para renumerar os vértices do grafo seguindo uma ordem.
+     *
+     * <p>
+     *     O vértice ordem[i] passa a ser o vértice i. Cada vértice continua com o seu número
+     *     original (ver <i>Grafo.getId</i>), então testemunhas e demais resultados impressos com
+     *     <i>idsOriginais</i> não mudam. Vizinhos numerados próximos ficam próximos na memória,
+     *     o que reduz as faltas de cache das varreduras e das consultas de adjacência.
+     * </p>
+     *
+     * @param grafo Grafo a ser renumerado.
+     * @param ordem Permutação dos vértices: ordem[novo] = antigo.
+     * @return O grafo renumerado, na representação escolhida por <i>escolheRepresentacao</i>.
+     */
+    static Grafo renumera(Grafo grafo, int[] ordem) {
+        int n = grafo.getQtdVertices();
+        int[] novoIndice = new int[n];
+        for (int i = 0; i < n; i++) novoIndice[ordem[i]] = i;
+
+        int[] offsets = new int[n + 1];
+        long[] ids = new long[n];
+        for (int i = 0; i < n; i++) {
+            offsets[i + 1] = Math.addExact(offsets[i], grafo.grau(ordem[i]));
+            ids[i] = grafo.getId(ordem[i]);
+        }
+        int[] targets = new int[offsets[n]];
+        double[] pesos = grafo.tipoDosPesos() == Pesos.SEM_PESO ? null : new double[offsets[n]];
+        IteradorDeVizinhos itW = grafo.iterador();
+        for (int i = 0; i < n; i++) {
+            int pos = offsets[i];
+            itW.comeca(ordem[i]);
+            for (int w = itW.proximo(); w >= 0; w = itW.proximo()) {
+                if (pesos != null) pesos[pos] = itW.peso();
+                targets[pos++] = novoIndice[w];
+            }
+            if (pesos == null) Arrays.sort(targets, offsets[i], offsets[i + 1]);
+            else ordenaComPesos(targets, pesos, offsets[i], offsets[i + 1]);
+        }
+        return escolheRepresentacao(new GrafoCSR(offsets, targets, ids, Pesos.compacta(pesos)));
+    }
+
+    /**
+     * Função que ordena os vértices por grau decrescente (counting sort), deixando juntos
+     * no começo os vértices mais consultados.
+     */
+    static int[] ordemPorGrau(Grafo grafo) {
+        int n = grafo.getQtdVertices();
+        int maiorGrau = 0;
+        for (int v = 0; v < n; v++) maiorGrau = Math.max(maiorGrau, grafo.grau(v));
+
+        int[] inicio = new int[maiorGrau + 2];
+        for (int v = 0; v < n; v++) inicio[maiorGrau - grafo.grau(v) + 1]++;
+        for (int g = 1; g < inicio.length; g++) inicio[g] += inicio[g - 1];
+
+        int[] ordem = new int[n];
+        for (int v = 0; v < n; v++) ordem[inicio[maiorGrau - grafo.grau(v)]++] = v;
+        return ordem;
+    }
+
+    /**
+     * Função que devolve a ordem de degenerescência: o vértice de menor grau é retirado de cada vez.
+     *
+     * <p>
+     *     Algoritmo de Batagelj e Zaversnik, O(n + m): os vértices ficam em <i>vert</i> ordenados
+     *     pelo grau atual, <i>inicioDoGrau</i> marca onde começa cada grau e, ao retirar um vértice,
+     *     cada vizinho de grau maior troca de lugar com o primeiro vértice do seu grau.
+     * </p>
+     */
+    static int[] ordemDeDegenerescencia(Grafo grafo) {
+        int n = grafo.getQtdVertices();
+        int[] grau = new int[n];
+        int maiorGrau = 0;
+        for (int v = 0; v < n; v++) {
+            grau[v] = grafo.grau(v);
+            maiorGrau = Math.max(maiorGrau, grau[v]);
+        }
+
+        int[] inicioDoGrau = new int[maiorGrau + 1];
+        for (int v = 0; v < n; v++) inicioDoGrau[grau[v]]++;
+        for (int g = 0, soma = 0; g <= maiorGrau; g++) {
+            int qtd = inicioDoGrau[g];
+            inicioDoGrau[g] = soma;
+            soma += qtd;
+        }
+        int[] vert = new int[n], pos = new int[n];
+        for (int v = 0; v < n; v++) {
+            pos[v] = inicioDoGrau[grau[v]]++;
+            vert[pos[v]] = v;
+        }
+        for (int g = maiorGrau; g > 0; g--) inicioDoGrau[g] = inicioDoGrau[g - 1];
+        inicioDoGrau[0] = 0;
+
+        IteradorDeVizinhos itW = grafo.iterador();
+        for (int i = 0; i < n; i++) {
+            int v = vert[i];
+            itW.comeca(v);
+            for (int w = itW.proximo(); w >= 0; w = itW.proximo()) {
+                if (grau[w] <= grau[v]) continue;
+                int primeiro = vert[inicioDoGrau[grau[w]]];
+                if (primeiro != w) { // Troca w com o primeiro vértice do seu grau
+                    int posW = pos[w];
+                    vert[posW] = primeiro;
+                    pos[primeiro] = posW;
+                    vert[inicioDoGrau[grau[w]]] = w;
+                    pos[w] = inicioDoGrau[grau[w]];
+                }
+                inicioDoGrau[grau[w]]++;
+                grau[w]--;
+            }
+        }
+        return vert;
+    }
+
+    /**
+     * Função que devolve a ordem de uma busca em largura, começando uma nova busca no menor
+     * vértice ainda não visitado de cada componente.
+     */
+    static int[] ordemBfs(Grafo grafo) {
+        return ordemDeBusca(grafo, false);
+    }
+
+    /**
+     * Função que devolve a ordem Reverse Cuthill-McKee.
+     *
+     * <p>
+     *     Cada componente é percorrida em largura a partir do seu vértice de menor grau e os
+     *     vizinhos de cada vértice entram na fila em ordem crescente de grau. A ordem final é
+     *     invertida, o que concentra as arestas perto da diagonal da matriz de adjacência.
+     * </p>
+     */
+    static int[] ordemRcm(Grafo grafo) {
+        int[] ordem = ordemDeBusca(grafo, true);
+        for (int i = 0, j = ordem.length - 1; i < j; i++, j--) {
+            int troca = ordem[i];
+            ordem[i] = ordem[j];
+            ordem[j] = troca;
+        }
+        return ordem;
+    }
+
+    /**
+     * Função com a busca em largura usada por <i>ordemBfs</i> e <i>ordemRcm</i>.
+     *
+     * @param cuthillMcKee Se true, cada componente começa no vértice de menor grau e os vizinhos
+     *                     entram na fila em ordem crescente de grau.
+     */
+    private static int[] ordemDeBusca(Grafo grafo, boolean cuthillMcKee) {
+        int n = grafo.getQtdVertices();
+        int[] ordem = new int[n];
+        boolean[] visitado = new boolean[n];
+        int[] raizes = cuthillMcKee ? ordemPorGrau(grafo) : null; // Grau decrescente, lido de trás para frente
+        long[] vizinhos = new long[16]; // (grau << 32) | vizinho, para ordenar os vizinhos pelo grau
+        IteradorDeVizinhos itW = grafo.iterador();
+
+        int fim = 0;
+        for (int i = 0; i < n; i++) {
+            int raiz = cuthillMcKee ? raizes[n - 1 - i] : i;
+            if (visitado[raiz]) continue;
+            visitado[raiz] = true;
+            int inicio = fim;
+            ordem[fim++] = raiz;
+            while (inicio < fim) {
+                int v = ordem[inicio++];
+                int qtd = 0;
+                itW.comeca(v);
+                for (int w = itW.proximo(); w >= 0; w = itW.proximo()) {
+                    if (visitado[w]) continue;
+                    visitado[w] = true;
+                    if (!cuthillMcKee) {
+                        ordem[fim++] = w;
+                        continue;
+                    }
+                    if (qtd == vizinhos.length) vizinhos = Arrays.copyOf(vizinhos, 2 * qtd);
+                    vizinhos[qtd++] = ((long) grafo.grau(w) << 32) | w;
+                }
+                Arrays.sort(vizinhos, 0, qtd);
+                for (int k = 0; k < qtd; k++) ordem[fim++] = (int) vizinhos[k];
+            }
+        }
+        return ordem;
+    }
+
+    /**
+     * Função que calcula a ordem dos vértices pelo nome usado na linha de comando.
+     *
+     * @param nome grau, degenerescencia, bfs ou rcm.
+     * @return A ordem (ordem[novo] = antigo), ou null se o nome não é conhecido.
+     */
+    static int[] ordemDosVertices(Grafo grafo, String nome) {
+        switch (nome) {
+            case "grau":
+                return ordemPorGrau(grafo);
+            case "degenerescencia":
+                return ordemDeDegenerescencia(grafo);
+            case "bfs":
+                return ordemBfs(grafo);
+            case "rcm":
+                return ordemRcm(grafo);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Função que escolhe a representação mais barata para o grafo lido.
+     *
+     * <p>
+     *     O CSR ocupa 4 * (n + 1 + 2m) bytes e a matriz em bits ocupa 8 * n * ceil(n / 64) bytes.
+     *     Quando a matriz não ocupa mais memória que o CSR, o que acontece em grafos com densidade
+     *     a partir de cerca de 1/32 ou com poucos vértices, ela é usada e a adjacência passa a ser
+     *     respondida em O(1) em vez de busca binária. Grafos com pesos ficam sempre no CSR.
+     * </p>
+     *
+     * @param grafo Grafo no formato CSR.
+     * @return O próprio grafo ou a sua matriz de adjacência em bits.
+     */
+    static Grafo escolheRepresentacao(GrafoCSR grafo) {
+        if (grafo.getPesos() != null) return grafo; // A matriz de bits não guarda os pesos
+        long n = grafo.getQtdVertices();
+        long longsDenso = n * ((n + 63) / 64);
+        long bytesCSR = 4 * (n + 1 + grafo.getTargets().length);
+        if (8 * longsDenso <= bytesCSR && longsDenso <= Integer.MAX_VALUE - 8) return GrafoDenso.de(grafo);
+        return grafo;
+    }
+
+    /**
+     * Função para decidir dado um conjunto de 4 vértices se eles não contém nenhum ciclo.
+     *
+     * <p>
+     *     A função funciona como uma DFS, escolhemos um vértice para ser a raiz e a partir da raiz
+     *     vamos para cada um de seus filhos e verificamos se esses filhos possuem uma conexão com
+     *     algum vértice já visitado.
+     *
+     *     Se um vértice possui uma conexão com um vértice já visitado pela DFS então o conjunto
+     *     de vértices não pode ser uma árvore. Nesse caso a função retorna -1.
+     *
+     *     Caso não possua nenhum ciclo então ou o conjunto forma uma árvore ou eles são desconexos.
+     *     Nesse caso a função retorna a máscara com as posições visitadas pela DFS.
+     * </p>
+     *
+     * @param grafo Grafo completo
+     * @param listaDeVertices Vetor contendo o conjunto de 4 vértices a serem verificados
+     * @param vertex Posição no vetor do vértice atual da DFS
+     * @param parent Posição do pai do vértice atual, ou seja, vértice de onde viemos
+     * @param visitados Máscara com as posições já visitadas na DFS (depth-first search)
+     * @return A máscara de posições visitadas se não possuem ciclo, -1 se possuem ciclo.
+     */
+    static int isTree(Grafo grafo, int[] listaDeVertices, int vertex, int parent, int visitados) {
+        visitados |= 1 << vertex;
+        for (int neighbor = 0; neighbor < listaDeVertices.length; neighbor++) { // Só interessam os vizinhos dentro da lista
+            if (neighbor == vertex || neighbor == parent) continue;
+            if (!grafo.adjacentes(listaDeVertices[vertex], listaDeVertices[neighbor])) continue;
+
+            if ((visitados & (1 << neighbor)) != 0) {
+                return -1;
+            }
+            visitados = isTree(grafo, listaDeVertices, neighbor, vertex, visitados);
+            if (visitados < 0) {
+                return -1;
+            }
+        }
+        return visitados;
+    }
+
+    /**
+     *  Função para decidir dado um conjunto de 4 vértices se eles formam um grafo caminho.
+     *
+     *  <p>
+     *      Para formar um grafo caminho os 4 vértices não podem conter um ciclo, logo,
+     *      usamos a função <i>isTree</i> para verificar se eles possuem ciclo ou não.
+     *
+     *      Além disso, o grafo precisa ser conexo e para isso a função verifica se
+     *      todos os vértices foram vistados na DFS, se isso acontecer eles são conexos e
+     *      a máscara de vértices visitados terá 4 bits. Então precisamos verificar
+     *      se a quantidade de bits da máscara é igual ao tamanho do vetor de vértices.
+     *
+     *      Também é necessário verificar se cada vértice da lista está conectado com
+     *      no máximo 2 outros vértices da lista pois pode acontecer da lista formar uma árvore
+     *      porém um vértice ter 3 conexões.
+     *
+     *      Se a lista passar por todas as verificações então o conjunto de 4 vértices é
+     *      um P4.
+     *
+     *  </p>
+     *
+     * @param listaDeVertices Vetor contendo o conjunto de 4 vértices a serem verificados
+     * @param grafo Grafo completo
+     * @return True se formam um grafo caminho, False caso contrário.
+     */
+    static boolean isP4(int[] listaDeVertices, Grafo grafo) {
+        int visitados = isTree(grafo, listaDeVertices, 0, -1, 0);
+        if (visitados < 0 || Integer.bitCount(visitados) != listaDeVertices.length) {
+            return false;
+        }
+
+        for (int vertex : listaDeVertices) {
+            int cntNeighbor = 0;
+            for (int neighbor : listaDeVertices) {
+                if (grafo.adjacentes(vertex, neighbor)) cntNeighbor++;
+            }
+            if (cntNeighbor > 2) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Função que devolve a posição do bit que representa o par (i, j) em uma máscara de adjacência.
+     *
+     * <p>
+     *     Os vértices de um conjunto pequeno são numerados pela posição 0, 1, 2, ... e o par
+     *     (i, j) com i &lt; j ocupa o bit j * (j - 1) / 2 + i. Assim os pares do vértice j ficam
+     *     juntos logo após os pares dos vértices anteriores e um conjunto de 5 vértices usa
+     *     exatamente os 10 bits menos significativos.
+     * </p>
+     *
+     * @param i Posição do menor vértice do par.
+     * @param j Posição do maior vértice do par.
+     * @return Posição do bit do par na máscara.
+     */
+    static int bitDoPar(int i, int j) {
+        return j * (j - 1) / 2 + i;
+    }
+
+    /**
+     * Tabela que indica, para cada uma das 1024 máscaras de um conjunto de 5 vértices, quais
+     * posições deixam um P4 induzido quando são retiradas: o bit p está ligado quando as outras
+     * 4 posições induzem um P4.
+     */
+    static final byte[] P4_FORA_POR_MASCARA = criaTabelaP4Fora();
+
+    /**
+     * Tabela com a quantidade de P4 induzidos por cada uma das 1024 máscaras de um conjunto de 5 vértices.
+     */
+    static final byte[] P4_POR_MASCARA = criaTabelaP4();
+
+    /**
+     * Função para gerar a tabela <i>P4_FORA_POR_MASCARA</i>.
+     *
+     * <p>
+     *      Para cada máscara testamos as 5 combinações de 4 posições. Quatro vértices induzem
+     *      um P4 quando possuem exatamente 3 arestas, nenhum vértice isolado e nenhum vértice
+     *      com 3 vizinhos, pois com 3 arestas as únicas outras opções são a estrela e o
+     *      triângulo com um vértice isolado.
+     * </p>
+     *
+     * @return Vetor indexado pela máscara contendo as posições que deixam um P4 induzido.
+     */
+    static byte[] criaTabelaP4Fora() {
+        byte[] tabela = new byte[1 << 10];
+        int[] grau = new int[5];
+
+        for (int mascara = 0; mascara < tabela.length; mascara++) {
+            int posicoes = 0;
+            for (int fora = 0; fora < 5; fora++) { // Posição que fica fora da combinação de 4 vértices
+                Arrays.fill(grau, 0);
+                int arestas = 0;
+                for (int j = 1; j < 5; j++) {
+                    for (int i = 0; i < j; i++) {
+                        if (i == fora || j == fora || (mascara & (1 << bitDoPar(i, j))) == 0) continue;
+                        grau[i]++;
+                        grau[j]++;
+                        arestas++;
+                    }
+                }
+                boolean caminho = arestas == 3;
+                for (int v = 0; v < 5 && caminho; v++) {
+                    if (v != fora && (grau[v] == 0 || grau[v] > 2)) caminho = false;
+                }
+                if (caminho) posicoes |= 1 << fora;
+            }
+            tabela[mascara] = (byte) posicoes;
+        }
+        return tabela;
+    }
+
+    /**
+     * Função para gerar a tabela <i>P4_POR_MASCARA</i> contando os bits de <i>P4_FORA_POR_MASCARA</i>.
+     *
+     * @return Vetor indexado pela máscara contendo a quantidade de P4 induzidos.
+     */
+    static byte[] criaTabelaP4() {
+        byte[] tabela = new byte[1 << 10];
+        for (int mascara = 0; mascara < tabela.length; mascara++) {
+            tabela[mascara] = (byte) Integer.bitCount(P4_FORA_POR_MASCARA[mascara]);
+        }
+        return tabela;
+    }
+
+    /**
+     * Classe que guarda a testemunha de que o grafo não é P4-esparso: um conjunto de 5 vértices
+     * e dois P4 induzidos por ele, cada um na ordem do caminho. Os vértices são índices do grafo,
+     * <i>toString(Grafo)</i> mostra os números originais do arquivo.
+     */
+    static class Testemunha {
+        private final int[] conjunto;
+        private final int[] primeiroP4;
+        private final int[] segundoP4;
+
+        public Testemunha(int[] conjunto, int[] primeiroP4, int[] segundoP4) {
+            this.conjunto = conjunto;
+            this.primeiroP4 = primeiroP4;
+            this.segundoP4 = segundoP4;
+        }
+
+        /**
+         * Função para montar a testemunha a partir dos 5 vértices e da máscara do subgrafo
+         * induzido por eles (ver <i>bitDoPar</i>).
+         *
+         * @param vertices Os 5 vértices na ordem das posições da máscara.
+         * @param mascara Máscara de adjacência dos 5 vértices, com pelo menos dois P4.
+         * @return A testemunha com o conjunto em ordem crescente e os dois primeiros P4.
+         */
+        public static Testemunha de(int[] vertices, int mascara) {
+            int posicoes = P4_FORA_POR_MASCARA[mascara];
+            int primeiroFora = Integer.numberOfTrailingZeros(posicoes);
+            int segundoFora = Integer.numberOfTrailingZeros(posicoes & (posicoes - 1));
+
+            int[] conjunto = vertices.clone();
+            Arrays.sort(conjunto);
+            return new Testemunha(conjunto,
+                    caminho(vertices, mascara, primeiroFora),
+                    caminho(vertices, mascara, segundoFora));
+        }
+
+        /**
+         * Função que coloca em ordem de caminho os 4 vértices que sobram ao retirar a posição <i>fora</i>.
+         */
+        private static int[] caminho(int[] vertices, int mascara, int fora) {
+            int inicio = -1;
+            for (int v = 0; v < 5 && inicio < 0; v++) { // Um extremo do caminho possui um único vizinho
+                if (v == fora) continue;
+                int grau = 0;
+                for (int w = 0; w < 5; w++) {
+                    if (w != v && w != fora && vizinhos(mascara, v, w)) grau++;
+                }
+                if (grau == 1) inicio = v;
+            }
+
+            int[] caminho = new int[4];
+            int anterior = -1, atual = inicio;
+            for (int p = 0; p < 4; p++) {
+                caminho[p] = vertices[atual];
+                int proximo = -1;
+                for (int w = 0; w < 5 && proximo < 0; w++) {
+                    if (w != atual && w != anterior && w != fora && vizinhos(mascara, atual, w)) proximo = w;
+                }
+                anterior = atual;
+                atual = proximo;
+            }
+            return caminho;
+        }
+
+        private static boolean vizinhos(int mascara, int v, int w) {
+            return (mascara & (1 << bitDoPar(Math.min(v, w), Math.max(v, w)))) != 0;
+        }
+
+        public int[] getConjunto() {
+            return conjunto;
+        }
+
+        public int[] getPrimeiroP4() {
+            return primeiroP4;
+        }
+
+        public int[] getSegundoP4() {
+            return segundoP4;
+        }
+
+        @Override
+        public String toString() {
+            return "Conjunto " + Arrays.toString(conjunto) + " induz os P4 "
+                    + Arrays.toString(primeiroP4) + " e " + Arrays.toString(segundoP4);
+        }
+
+        /**
+         * Função para descrever a testemunha com os números originais dos vértices do grafo.
+         */
+        public String toString(Grafo grafo) {
+            long[] idsDoConjunto = idsOriginais(grafo, conjunto);
+            Arrays.sort(idsDoConjunto); // Os índices podem ter sido renumerados, ver renumera
+            return "Conjunto " + Arrays.toString(idsDoConjunto) + " induz os P4 "
+                    + Arrays.toString(idsOriginais(grafo, primeiroP4)) + " e "
+                    + Arrays.toString(idsOriginais(grafo, segundoP4));
+        }
+    }
+
+    /**
+     * Função para montar a matriz de adjacência, em bits, dos vértices do grafo.
+     *
+     * <p>
+     *     A linha do vértice u ocupa <i>palavras</i> longs consecutivos e o bit v da linha indica
+     *     se os vértices u e v são vizinhos. Assim a consulta de adjacência custa O(1) em vez de
+     *     percorrer a lista de vizinhos.
+     * </p>
+     *
+     * @param grafo Grafo completo.
+     * @param palavras Quantidade de longs de cada linha.
+     * @return Vetor com as linhas da matriz uma após a outra.
+     */
+    static long[] matrizDeAdjacencia(Grafo grafo, int palavras) {
+        int n = grafo.getQtdVertices();
+        long[] matriz = new long[n * palavras];
+        IteradorDeVizinhos itW = grafo.iterador();
+        for (int u = 0; u < n; u++) {
+            itW.comeca(u);
+            for (int w = itW.proximo(); w >= 0; w = itW.proximo()) matriz[u * palavras + (w >>> 6)] |= 1L << w;
+        }
+        return matriz;
+    }
+
+    /**
+     * Função que consulta a matriz gerada por <i>matrizDeAdjacencia</i>.
+     * @return 1 se as posições u e v são vizinhas e 0 caso contrário.
+     */
+    static int adjacente(long[] matriz, int palavras, int u, int v) {
+        return (int) (matriz[u * palavras + (v >>> 6)] >>> v) & 1;
+    }
+
+    /**
+     * Função para calcular o coeficiente binomial C(n, k).
+     *
+     * @throws ArithmeticException se o valor não cabe em um long.
+     */
+    static long combinacoes(int n, int k) {
+        if (k < 0 || n < 0 || k > n) return 0;
+        k = Math.min(k, n - k);
+        long resultado = 1;
+        for (int i = 0; i < k; i++) {
+            resultado = Math.multiplyExact(resultado, n - i) / (i + 1); // Sempre divide de forma exata
+        }
+        return resultado;
+    }
+
+    /**
+     * Função que devolve a posição de uma combinação na ordem lexicográfica das combinações
+     * de c.length elementos de {0, ..., n-1}, a mesma ordem gerada pelos laços de <i>isP4Sparse</i>.
+     *
+     * <p>
+     *     Usa o sistema combinatório de numeração: a posição é
+     *     C(n, k) - 1 - soma de C(n - 1 - c[p], k - p) para p = 0, ..., k-1.
+     * </p>
+     *
+     * @param c Combinação em ordem crescente.
+     * @param n Quantidade de elementos.
+     * @return Posição da combinação, entre 0 e C(n, k) - 1.
+     */
+    static long rankCombinacao(int[] c, int n) {
+        int k = c.length;
+        long soma = 0;
+        for (int p = 0; p < k; p++) soma += combinacoes(n - 1 - c[p], k - p);
+        return combinacoes(n, k) - 1 - soma;
+    }
+
+    /**
+     * Função inversa de <i>rankCombinacao</i>: preenche c com a combinação que está na posição rank.
+     *
+     * @param rank Posição da combinação, entre 0 e C(n, c.length) - 1.
+     * @param n Quantidade de elementos.
+     * @param c Vetor que recebe a combinação em ordem crescente.
+     */
+    static void unrankCombinacao(long rank, int n, int[] c) {
+        int k = c.length;
+        long resto = combinacoes(n, k) - 1 - rank;
+        int y = n - 1;
+        for (int p = 0; p < k; p++) { // Escolhe o maior y com C(y, k - p) <= resto
+            while (combinacoes(y, k - p) > resto) y--;
+            resto -= combinacoes(y, k - p);
+            c[p] = n - 1 - y;
+            y--;
+        }
+    }
+
+    /**
+     * Função que divide as C(n, 5) combinações em faixas contíguas de tamanhos iguais (a diferença
+     * entre faixas é no máximo 1). A faixa p vai de limites[p] (inclusivo) até limites[p + 1]
+     * (exclusivo) e pode ser verificada por uma thread, por outro processo ou retomada a partir
+     * de um checkpoint com <i>isP4SparseFaixa</i>.
+     *
+     * @param n Quantidade de vértices.
+     * @param partes Quantidade de faixas.
+     * @return Vetor com partes + 1 limites.
+     */
+    static long[] faixasBalanceadas(int n, int partes) {
+        long total = combinacoes(n, 5);
+        long tamanho = total / partes, sobra = total % partes;
+        long[] limites = new long[partes + 1];
+        for (int p = 0; p <= partes; p++) {
+            limites[p] = tamanho * p + Math.min(p, sobra);
+        }
+        return limites;
+    }
+
+    /**
+     * Função que gera todos os subconjuntos de 5 vértices e conta quantos grafos P4 cada
+     * subconjunto pode induzir. Se algum subconjunto induzir mais de um grafo P4 então o
+     * grafo não é P4-esparso. Caso contrário, ele é P4-esparso.
+     *
+     * <p>
+     *     O trabalho é feito pela função <i>verificaFaixa</i> com todas as combinações.
+     *     Essa função continua sendo a implementação de referência.
+     * </p>
+     *
+     * @param grafo Grafo completo.
+     * @return True se o grafo é P4-esparso e False caso contrário.
+     */
+    static boolean isP4Sparse(Grafo grafo) {
+        int n = grafo.getQtdVertices();
+        if (n < 5) return true;
+        return isP4SparseFaixa(grafo, 0, combinacoes(n, 5));
+    }
+
+    /**
+     * Função que verifica somente as combinações com posição em [inicio, fim) na ordem lexicográfica.
+     * Permite dividir a verificação entre processos ou continuar a partir de um checkpoint.
+     *
+     * @param grafo Grafo completo.
+     * @param inicio Posição da primeira combinação (inclusivo).
+     * @param fim Posição da última combinação (exclusivo).
+     * @return False se alguma combinação da faixa induz mais de um P4, True caso contrário.
+     */
+    static boolean isP4SparseFaixa(Grafo grafo, long inicio, long fim) {
+        int n = grafo.getQtdVertices();
+        if (n < 5 || inicio >= fim) return true;
+
+        int palavras = (n + 63) >>> 6;
+        long[] matriz = matrizDeAdjacencia(grafo, palavras);
+
+        return verificaFaixa(matriz, palavras, n, inicio, fim - inicio, new AtomicBoolean());
+    }
+
+    /**
+     * Função que testa <i>quantidade</i> subconjuntos de 5 posições a partir da combinação de posição <i>inicio</i>.
+     *
+     * <p>
+     *     A combinação inicial é obtida com <i>unrankCombinacao</i> e os laços começam nela;
+     *     depois da primeira volta cada laço recomeça do índice anterior mais um, como na
+     *     ordem lexicográfica.
+     *
+     *     Cada nível dos laços guarda a máscara parcial do subgrafo induzido pelos vértices já
+     *     escolhidos (ver <i>bitDoPar</i>). Ao escolher o vértice de um nível somente os bits
+     *     dos pares com os vértices anteriores são acrescentados, então o laço mais interno faz
+     *     4 consultas à matriz de adjacência e uma consulta à tabela <i>P4_POR_MASCARA</i>, sem
+     *     alocar nada.
+     *
+     *     A flag <i>violou</i> é compartilhada entre as tarefas paralelas: quem encontra um
+     *     subconjunto com mais de um P4 liga a flag e as outras param na próxima iteração do
+     *     quarto laço.
+     * </p>
+     *
+     * @param matriz Matriz gerada por <i>matrizDeAdjacencia</i>.
+     * @param palavras Quantidade de longs de cada linha da matriz.
+     * @param n Quantidade de vértices.
+     * @param inicio Posição da primeira combinação.
+     * @param quantidade Quantidade de combinações a testar, maior que zero.
+     * @param violou Flag ligada quando algum subconjunto induz mais de um P4.
+     * @return False se esta faixa encontrou um subconjunto com mais de um P4, True caso contrário.
+     */
+    static boolean verificaFaixa(long[] matriz, int palavras, int n, long inicio, long quantidade, AtomicBoolean violou) {
+        int[] c = new int[5];
+        unrankCombinacao(inicio, n, c);
+        boolean primeiraVolta = true;
+        long restantes = quantidade;
+
+        for (int i = c[0]; i < n; i++) {
+            for (int j = primeiraVolta ? c[1] : i+1; j < n; j++) {
+                int mascaraJ = adjacente(matriz, palavras, i, j);
+                for (int k = primeiraVolta ? c[2] : j+1; k < n; k++) {
+                    int mascaraK = mascaraJ
+                            | adjacente(matriz, palavras, i, k) << 1
+                            | adjacente(matriz, palavras, j, k) << 2;
+                    for (int l = primeiraVolta ? c[3] : k+1; l < n; l++) {
+                        if (violou.get()) return true; // Outra tarefa já decidiu a resposta
+                        int mascaraL = mascaraK
+                                | adjacente(matriz, palavras, i, l) << 3
+                                | adjacente(matriz, palavras, j, l) << 4
+                                | adjacente(matriz, palavras, k, l) << 5;
+                        for (int m = primeiraVolta ? c[4] : l+1; m < n; m++) { // Conjunto contendo uma combinação de 5 vértices.
+                            primeiraVolta = false;
+                            int mascara = mascaraL
+                                    | adjacente(matriz, palavras, i, m) << 6
+                                    | adjacente(matriz, palavras, j, m) << 7
+                                    | adjacente(matriz, palavras, k, m) << 8
+                                    | adjacente(matriz, palavras, l, m) << 9;
+
+                            if (P4_POR_MASCARA[mascara] > 1) { // Testo se o subconjunto de 5 vértices induz mais de um P4
+                                violou.set(true);
+                                return false;
+                            }
+                            if (--restantes == 0) return true;
+                        }
+                    }
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Tarefa do ForkJoinPool que divide uma faixa de combinações ao meio até ela ficar com no
+     * máximo <i>granularidade</i> combinações. Como as faixas são contadas em combinações e não
+     * pelo primeiro índice, as metades sempre possuem o mesmo trabalho.
+     */
+    static class TarefaP4Sparse extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final long[] matriz;
+        private final int palavras;
+        private final int n;
+        private final long inicio;
+        private final long fim;
+        private final long granularidade;
+        private final AtomicBoolean violou;
+
+        public TarefaP4Sparse(long[] matriz, int palavras, int n, long inicio, long fim, long granularidade, AtomicBoolean violou) {
+            this.matriz = matriz;
+            this.palavras = palavras;
+            this.n = n;
+            this.inicio = inicio;
+            this.fim = fim;
+            this.granularidade = granularidade;
+            this.violou = violou;
+        }
+
+        @Override
+        protected void compute() {
+            if (violou.get()) return;
+            if (fim - inicio <= granularidade) {
+                verificaFaixa(matriz, palavras, n, inicio, fim - inicio, violou);
+                return;
+            }
+            long meio = inicio + (fim - inicio) / 2;
+            invokeAll(new TarefaP4Sparse(matriz, palavras, n, inicio, meio, granularidade, violou),
+                    new TarefaP4Sparse(matriz, palavras, n, meio, fim, granularidade, violou));
+        }
+    }
+
+    /**
+     * Versão paralela de <i>isP4Sparse</i>. As combinações são divididas em faixas do mesmo
+     * tamanho executadas no pool e todas param assim que alguma encontra um subconjunto com
+     * mais de um P4.
+     *
+     * @param grafo Grafo completo.
+     * @param pool Pool onde as tarefas serão executadas.
+     * @return True se o grafo é P4-esparso e False caso contrário.
+     */
+    static boolean isP4SparseParalelo(Grafo grafo, ForkJoinPool pool) {
+        int n = grafo.getQtdVertices();
+        if (n < 5) return true;
+
+        int palavras = (n + 63) >>> 6;
+        long[] matriz = matrizDeAdjacencia(grafo, palavras);
+        AtomicBoolean violou = new AtomicBoolean();
+
+        long total = combinacoes(n, 5);
+        long granularidade = Math.max(1 << 12, total / (64L * pool.getParallelism())); // Várias faixas por thread para o roubo de tarefas
+        pool.invoke(new TarefaP4Sparse(matriz, palavras, n, 0, total, granularidade, violou));
+        return !violou.get();
+    }
+
+    /**
+     * Classe que decide se um grafo é P4-esparso sem gerar os subconjuntos de 5 vértices.
+     *
+     * <p>
+     *     Usa a caracterização de Jamison e Olariu: um grafo é P4-esparso se, e somente se,
+     *     todo subgrafo induzido H com pelo menos dois vértices é desconexo, possui complemento
+     *     desconexo ou é uma aranha (spider) cuja cabeça também é P4-esparsa.
+     *
+     *     Uma aranha é uma partição (S, K, R) dos vértices onde S é independente, K é uma clique,
+     *     |S| = |K| &gt;= 2, todo vértice de R é vizinho de todos de K e de nenhum de S. Na aranha
+     *     fina cada vértice de S possui exatamente um vizinho em K, na aranha grossa cada vértice
+     *     de S possui exatamente um não vizinho em K. O conjunto R é a cabeça da aranha.
+     *
+     *     A classe percorre a decomposição modular do grafo de cima para baixo usando uma pilha:
+     *     o conjunto atual é dividido em componentes conexas, em componentes do complemento ou,
+     *     se for uma aranha, trocado pela sua cabeça. Se nenhum dos casos se aplica o grafo não
+     *     é P4-esparso. Conjuntos com menos de 5 vértices são descartados, pois não possuem 5
+     *     vértices para induzir dois P4.
+     *
+     *     Toda varredura fica restrita ao conjunto tratado. Cada vértice guarda uma cópia da sua
+     *     lista de vizinhos e o número do conjunto em que está; ao varrer a lista, os vizinhos que
+     *     ficaram em outro conjunto são retirados dela, o que acontece uma única vez por arco. O
+     *     grau de cada vértice no seu conjunto é mantido a cada divisão em O(tamanho do conjunto),
+     *     sem varrer as listas. Com os graus, as componentes saem das listas do vértice de maior
+     *     grau e dos vértices fora da sua vizinhança, as do complemento das listas do vértice de
+     *     menor grau e dos seus vizinhos, e a aranha das listas de K. Assim um nível que separa
+     *     poucos vértices, como nas cadeias de uniões e junções, custa O(tamanho do conjunto) e
+     *     não O(arestas do conjunto).
+     *
+     *     O custo não é linear: um nível ainda pode varrer listas de vértices que continuam no
+     *     mesmo conjunto. A decomposição possui no máximo 2n conjuntos e cada um varre no máximo
+     *     todas as listas, o que dá O(n * (n + m)) no pior caso. O reconhecimento em O(n + m) de
+     *     Jamison e Olariu depende da árvore de decomposição modular, que o programa não monta.
+     * </p>
+     */
+    static class DecomposicaoP4Esparsa {
+        private final Grafo grafo;
+        private final int[] inicioDaLista; // Cópia das listas de vizinhos, encolhidas durante a decomposição
+        private final int[] fimDaLista;
+        private final int[] lista;
+        private final int[] conjuntoDe;     // Número do conjunto atual de cada vértice
+        private final int[] grauNoConjunto; // Grau de cada vértice no seu conjunto atual
+        private int qtdConjuntos;
+        private final int[] marca;    // Marcas com carimbo, evitam limpar o vetor a cada nível
+        private final int[] contagemK; // Quantidade de vizinhos em K de cada vértice
+        private int carimbo;
+        private int[] semAranha; // Conjunto conexo, co-conexo e que não é aranha, onde verifica parou
+
+        public DecomposicaoP4Esparsa(Grafo grafo) {
+            this.grafo = grafo;
+            int n = grafo.getQtdVertices();
+            inicioDaLista = new int[n + 1];
+            for (int v = 0; v < n; v++) inicioDaLista[v + 1] = Math.addExact(inicioDaLista[v], grafo.grau(v));
+            lista = new int[inicioDaLista[n]];
+            fimDaLista = new int[n];
+            grauNoConjunto = new int[n];
+            IteradorDeVizinhos vizinhos = grafo.iterador();
+            for (int v = 0; v < n; v++) {
+                int fim = inicioDaLista[v];
+                vizinhos.comeca(v);
+                for (int w = vizinhos.proximo(); w >= 0; w = vizinhos.proximo()) lista[fim++] = w;
+                fimDaLista[v] = fim;
+            }
+            this.conjuntoDe = new int[n];
+            this.marca = new int[n];
+            this.contagemK = new int[n];
+        }
+
+        private int novoCarimbo() {
+            if (carimbo == Integer.MAX_VALUE) { // Recomeça a contagem quando o inteiro estoura
+                Arrays.fill(marca, 0);
+                carimbo = 0;
+            }
+            return ++carimbo;
+        }
+
+        /**
+         * Função que dá um número novo ao conjunto. Os vizinhos que ficaram em outros conjuntos
+         * passam a ser retirados das listas dos seus vértices por <i>encolheLista</i>.
+         *
+         * @param vizinhosPerdidos Quantos vizinhos cada vértice do conjunto deixou no conjunto anterior.
+         */
+        private int[] novoConjunto(int[] conjunto, int vizinhosPerdidos) {
+            int numero = ++qtdConjuntos; // Cada conjunto empilhado é um nó da decomposição, no máximo 2n
+            for (int v : conjunto) {
+                conjuntoDe[v] = numero;
+                grauNoConjunto[v] -= vizinhosPerdidos;
+            }
+            return conjunto;
+        }
+
+        /**
+         * Função que retira da lista de v os vizinhos que não estão no conjunto de v.
+         * @return O fim da lista de v, que só possui vizinhos do conjunto.
+         */
+        private int encolheLista(int v) {
+            int fim = fimDaLista[v];
+            for (int i = inicioDaLista[v]; i < fim; ) {
+                if (conjuntoDe[lista[i]] == conjuntoDe[v]) i++;
+                else lista[i] = lista[--fim];
+            }
+            fimDaLista[v] = fim;
+            return fim;
+        }
+
+        /**
+         * Função que percorre a decomposição e decide se o grafo é P4-esparso.
+         * @return True se o grafo é P4-esparso e False caso contrário.
+         */
+        public boolean verifica() {
+            int[] todos = new int[marca.length];
+            for (int v = 0; v < todos.length; v++) todos[v] = v;
+            return verifica(todos);
+        }
+
+        /**
+         * Função que decide se o subgrafo induzido pelos vértices dados é P4-esparso. As listas
+         * são encolhidas para o conjunto, então cada objeto faz uma única verificação.
+         */
+        private boolean verifica(int[] vertices) {
+            int numero = ++qtdConjuntos;
+            for (int v : vertices) conjuntoDe[v] = numero;
+            for (int v : vertices) grauNoConjunto[v] = encolheLista(v) - inicioDaLista[v];
+            Deque<int[]> pilha = new ArrayDeque<>();
+            pilha.push(vertices);
+
+            while (!pilha.isEmpty()) {
+                int[] conjunto = pilha.pop();
+                if (conjunto.length < 5) continue; // Menos de 5 vértices nunca induzem dois P4
+
+                List<int[]> partes = componentes(conjunto);
+                if (partes.size() > 1) { // Nenhuma aresta liga duas componentes
+                    for (int[] parte : partes) pilha.push(novoConjunto(parte, 0));
+                    continue;
+                }
+                partes = componentesDoComplemento(conjunto);
+                if (partes.size() > 1) { // Cada vértice vê todos os vértices das outras partes
+                    for (int[] parte : partes) pilha.push(novoConjunto(parte, conjunto.length - parte.length));
+                    continue;
+                }
+
+                int[] cabeca = cabecaDaAranha(conjunto);
+                if (cabeca == null) { // Conexo, co-conexo e não é aranha
+                    semAranha = conjunto;
+                    return false;
+                }
+                pilha.push(novoConjunto(cabeca, (conjunto.length - cabeca.length) / 2)); // A cabeça vê todo o K
+            }
+            return true;
+        }
+
+        /**
+         * @return Os números originais (ver <i>Grafo.getId</i>) dos vértices do conjunto conexo,
+         *     co-conexo e que não é aranha onde <i>verifica</i> parou, em ordem crescente, ou null
+         *     se a verificação não falhou.
+         */
+        public long[] getIdsSemAranha() {
+            if (semAranha == null) return null;
+            long[] ids = idsOriginais(grafo, semAranha);
+            Arrays.sort(ids);
+            return ids;
+        }
+
+        /**
+         * Função que procura 5 vértices com dois P4 induzidos no conjunto onde <i>verifica</i> parou.
+         *
+         * <p>
+         *     O subgrafo induzido por esse conjunto não é P4-esparso, então contém a testemunha, e
+         *     todo conjunto que contém uma testemunha também não é. Os 5 vértices são fixados um de
+         *     cada vez: uma busca binária acha o menor prefixo dos candidatos que, junto com os
+         *     vértices já fixados, ainda não é P4-esparso e o último vértice do prefixo é fixado.
+         *     Cada consulta é uma nova decomposição, então a busca custa O(log n) verificações, ou
+         *     O(n * (n + m) * log n), e não depende da quantidade de P4 do grafo, como <i>testemunhaP4Sparse</i>.
+         * </p>
+         *
+         * @return A testemunha, ou null se <i>verifica</i> não foi chamada ou não falhou.
+         */
+        public Testemunha testemunha() {
+            if (semAranha == null) return null;
+            int[] candidatos = semAranha.clone();
+            int qtdCandidatos = candidatos.length;
+            int[] fixados = new int[5];
+            for (int qtdFixados = 0; qtdFixados < 5; qtdFixados++) {
+                // Com menos de 5 vértices o prefixo vazio é P4-esparso e com todos os candidatos não é
+                int baixo = 0, alto = qtdCandidatos;
+                while (alto - baixo > 1) {
+                    int meio = (baixo + alto) >>> 1;
+                    if (isP4Esparso(fixados, qtdFixados, candidatos, meio)) baixo = meio;
+                    else alto = meio;
+                }
+                fixados[qtdFixados] = candidatos[alto - 1];
+                qtdCandidatos = alto - 1;
+            }
+
+            int mascara = 0;
+            for (int j = 1; j < 5; j++) {
+                for (int i = 0; i < j; i++) {
+                    if (grafo.adjacentes(fixados[i], fixados[j])) mascara |= 1 << bitDoPar(i, j);
+                }
+            }
+            return Testemunha.de(fixados, mascara);
+        }
+
+        private boolean isP4Esparso(int[] fixados, int qtdFixados, int[] candidatos, int qtdCandidatos) {
+            if (qtdFixados + qtdCandidatos < 5) return true;
+            int[] vertices = Arrays.copyOf(fixados, qtdFixados + qtdCandidatos);
+            System.arraycopy(candidatos, 0, vertices, qtdFixados, qtdCandidatos);
+            return new DecomposicaoP4Esparsa(grafo).verifica(vertices);
+        }
+
+        /**
+         * Função para separar o conjunto em componentes conexas.
+         *
+         * <p>
+         *     A componente do vértice v de maior grau contém a vizinhança fechada N[v]. Só os
+         *     vértices fora de N[v] são percorridos por uma BFS que não entra em N[v]: cada árvore
+         *     dessa BFS que não toca N[v] é uma componente e as demais fazem parte da componente de v.
+         * </p>
+         */
+        private List<int[]> componentes(int[] conjunto) {
+            int total = conjunto.length;
+            int v = conjunto[0];
+            for (int w : conjunto) if (grauNoConjunto[w] > grauNoConjunto[v]) v = w;
+            if (grauNoConjunto[v] == total - 1) return Collections.singletonList(conjunto);
+
+            int emN = novoCarimbo();
+            marca[v] = emN;
+            int fimDaListaDeV = encolheLista(v);
+            for (int i = inicioDaLista[v]; i < fimDaListaDeV; i++) marca[lista[i]] = emN;
+            int visitado = novoCarimbo();
+            int separado = novoCarimbo();
+
+            List<int[]> resultado = new ArrayList<>();
+            int[] fila = new int[total - 1 - grauNoConjunto[v]];
+            int qtdSeparados = 0;
+            for (int raiz : conjunto) {
+                if (marca[raiz] == emN || marca[raiz] == visitado || marca[raiz] == separado) continue;
+                int inicio = 0, fim = 0;
+                fila[fim++] = raiz;
+                marca[raiz] = visitado;
+                boolean tocaN = false;
+                while (inicio < fim) {
+                    int u = fila[inicio++];
+                    int fimDaListaDeU = encolheLista(u);
+                    for (int i = inicioDaLista[u]; i < fimDaListaDeU; i++) {
+                        int w = lista[i];
+                        if (marca[w] == emN) {
+                            tocaN = true;
+                        } else if (marca[w] != visitado) {
+                            marca[w] = visitado;
+                            fila[fim++] = w;
+                        }
+                    }
+                }
+                if (tocaN) continue;
+                for (int i = 0; i < fim; i++) marca[fila[i]] = separado;
+                resultado.add(Arrays.copyOf(fila, fim));
+                qtdSeparados += fim;
+            }
+            if (resultado.isEmpty()) return Collections.singletonList(conjunto);
+
+            int[] componenteDeV = new int[total - qtdSeparados];
+            int qtd = 0;
+            for (int w : conjunto) if (marca[w] != separado) componenteDeV[qtd++] = w;
+            resultado.add(componenteDeV);
+            return resultado;
+        }
+
+        /**
+         * Função para separar o conjunto em componentes conexas do complemento sem construir o complemento.
+         *
+         * <p>
+         *     A componente do complemento que contém o vértice v de menor grau contém todos os não
+         *     vizinhos de v, então só os vizinhos de v são percorridos. Um vizinho que não vê algum
+         *     não vizinho de v começa na componente de v. A partir deles uma busca no complemento,
+         *     restrita aos vizinhos de v, alcança o resto da componente de v e os vizinhos que
+         *     sobram são divididos da mesma forma.
+         *
+         *     Na busca mantemos os vértices ainda não alcançados em um vetor. Ao visitar u marcamos
+         *     seus vizinhos e todo vértice restante que não foi marcado é vizinho de u no complemento.
+         *     Os vértices marcados que continuam no vetor são pagos pelas arestas de u e a busca para
+         *     quando o vetor fica vazio, sem varrer as listas dos vértices que ainda estão na fila.
+         * </p>
+         */
+        private List<int[]> componentesDoComplemento(int[] conjunto) {
+            int total = conjunto.length;
+            int v = conjunto[0];
+            for (int w : conjunto) if (grauNoConjunto[w] < grauNoConjunto[v]) v = w;
+            int qtdNaoVizinhos = total - grauNoConjunto[v]; // Inclui o próprio v
+
+            int[] restantes = new int[grauNoConjunto[v]];
+            int tam = 0;
+            int emN = novoCarimbo();
+            int fimDaListaDeV = encolheLista(v);
+            for (int i = inicioDaLista[v]; i < fimDaListaDeV; i++) {
+                marca[lista[i]] = emN;
+                restantes[tam++] = lista[i];
+            }
+
+            // Vizinhos de v que não veem algum não vizinho de v, ligados a v no complemento
+            int[] fila = new int[restantes.length];
+            int inicio = 0, fim = 0;
+            for (int i = 0; i < tam; ) {
+                int u = restantes[i];
+                int vizinhosEmN = 0;
+                int fimDaListaDeU = encolheLista(u);
+                for (int j = inicioDaLista[u]; j < fimDaListaDeU; j++) {
+                    if (marca[lista[j]] == emN) vizinhosEmN++;
+                }
+                if (grauNoConjunto[u] - vizinhosEmN < qtdNaoVizinhos) {
+                    restantes[i] = restantes[--tam];
+                    fila[fim++] = u;
+                } else {
+                    i++;
+                }
+            }
+
+            List<int[]> resultado = new ArrayList<>();
+            int qtdSeparados = 0;
+            for (boolean parteDeV = true; parteDeV || tam > 0; parteDeV = false) {
+                if (!parteDeV) { // Começa outra componente com um vizinho de v que sobrou
+                    inicio = 0;
+                    fim = 0;
+                    fila[fim++] = restantes[--tam];
+                }
+                while (inicio < fim && tam > 0) {
+                    int u = fila[inicio++];
+                    int vizinho = novoCarimbo();
+                    int fimDaListaDeU = encolheLista(u);
+                    for (int j = inicioDaLista[u]; j < fimDaListaDeU; j++) marca[lista[j]] = vizinho;
+                    for (int i = 0; i < tam; ) {
+                        int w = restantes[i];
+                        if (marca[w] == vizinho) {
+                            i++;
+                        } else { // Não vizinho de u, logo vizinho no complemento
+                            restantes[i] = restantes[--tam];
+                            fila[fim++] = w;
+                        }
+                    }
+                }
+                if (!parteDeV) {
+                    resultado.add(Arrays.copyOf(fila, fim));
+                    qtdSeparados += fim;
+                }
+            }
+            if (resultado.isEmpty()) return Collections.singletonList(conjunto);
+
+            int separado = novoCarimbo();
+            for (int[] parte : resultado) for (int w : parte) marca[w] = separado;
+            int[] parteDeV = new int[total - qtdSeparados];
+            int qtd = 0;
+            for (int w : conjunto) if (marca[w] != separado) parteDeV[qtd++] = w;
+            resultado.add(parteDeV);
+            return resultado;
+        }
+
+        /**
+         * Função para decidir se o conjunto induz uma aranha.
+         *
+         * <p>
+         *     Com |K| &gt;= 2 as pernas da aranha fina são exatamente os vértices de grau 1 e o
+         *     corpo K da aranha grossa são exatamente os vértices de grau |conjunto| - 2. A partir
+         *     dos candidatos a partição é reconstruída e todas as condições são conferidas. Só as
+         *     listas das pernas (na fina) e de K são varridas; as arestas de K e de S saem do
+         *     conjunto junto com eles.
+         * </p>
+         *
+         * @param conjunto Conjunto conexo e co-conexo de vértices.
+         * @return Os vértices da cabeça R se o conjunto for uma aranha e null caso contrário.
+         */
+        private int[] cabecaDaAranha(int[] conjunto) {
+            int total = conjunto.length;
+            int qtdGrauUm = 0;
+            for (int v : conjunto) {
+                if (grauNoConjunto[v] == 1) qtdGrauUm++;
+            }
+
+            boolean fina = qtdGrauUm > 0;
+            int emK = novoCarimbo();
+            int tamK = 0;
+            for (int v : conjunto) {
+                if (fina && grauNoConjunto[v] == 1) {
+                    encolheLista(v);
+                    int w = lista[inicioDaLista[v]]; // O único vizinho da perna está em K
+                    if (marca[w] != emK) {
+                        marca[w] = emK;
+                        tamK++;
+                    }
+                } else if (!fina && grauNoConjunto[v] == total - 2) {
+                    marca[v] = emK;
+                    tamK++;
+                }
+            }
+            if (tamK < 2 || 2 * tamK > total) return null;
+
+            for (int v : conjunto) contagemK[v] = 0;
+            for (int k : conjunto) { // Quantidade de vizinhos em K de cada vértice
+                if (marca[k] != emK) continue;
+                int fimDaListaDeK = encolheLista(k);
+                for (int i = inicioDaLista[k]; i < fimDaListaDeK; i++) contagemK[lista[i]]++;
+            }
+
+            int qtdPernas = 0;
+            int[] cabeca = new int[total - 2 * tamK];
+            int qtdCabeca = 0;
+            for (int v : conjunto) {
+                int c = contagemK[v];
+                if (marca[v] == emK) {
+                    if (c != tamK - 1) return null; // K precisa ser uma clique
+                } else if (fina ? grauNoConjunto[v] == 1 : (c == tamK - 1 && grauNoConjunto[v] == tamK - 1)) {
+                    qtdPernas++; // Perna: na fina possui um vizinho em K, na grossa só não vê um vértice de K
+                } else if (c == tamK && qtdCabeca < cabeca.length) {
+                    cabeca[qtdCabeca++] = v;
+                } else {
+                    return null;
+                }
+            }
+            if (qtdPernas != tamK || qtdCabeca != cabeca.length) return null;
+
+            // Cada vértice de K precisa estar ligado às pernas pela bijeção esperada
+            for (int v : conjunto) {
+                if (marca[v] != emK) continue;
+                int pernasVizinhas = grauNoConjunto[v] - (tamK - 1) - qtdCabeca;
+                if (pernasVizinhas != (fina ? 1 : tamK - 1)) return null;
+            }
+            return cabeca;
+        }
+    }
+
+    /**
+     * Classe para representar a coárvore (cotree) de um cografo, montada pelo algoritmo
+     * incremental de Corneil, Perl e Stewart.
+     *
+     * <p>
+     *     As folhas são os vértices do grafo (nós 0 a n-1) e os nós internos, a partir de n,
+     *     possuem rótulo 0 (união disjunta) ou 1 (junção), alternando entre pai e filho. Dois
+     *     vértices são vizinhos se, e somente se, o ancestral comum mais baixo tem rótulo 1.
+     *
+     *     Os vértices são inseridos um de cada vez. Ao inserir x marcamos como cheios os nós
+     *     cujas folhas são todas vizinhas de x, subindo a partir das folhas vizinhas e contando
+     *     os filhos cheios de cada nó (md). Os nós que não são cheios mas possuem folhas vizinhas
+     *     são os mistos e o grafo continua cografo se, e somente se, eles formam um caminho
+     *     da raiz até um nó u onde todo nó 1 do caminho possui todos os outros filhos cheios,
+     *     todo nó 0 possui todos os outros filhos vazios e os filhos de u são cheios ou vazios.
+     *     Os nós 1 do caminho possuem filhos cheios e os rótulos alternam, então o caminho tem
+     *     tamanho proporcional aos nós marcados e cada inserção custa O(1 + grau de x).
+     *
+     *     As folhas usam os índices do grafo; <i>getId</i> e <i>toString</i> dão os números
+     *     originais dos vértices, como em <i>Testemunha.toString(Grafo)</i>.
+     * </p>
+     */
+    static class Coarvore {
+        private final Grafo grafo;
+        private final int n;
+        private final int[] pai;
+        private final int[] primeiroFilho;
+        private final int[] proximoIrmao;
+        private final int[] irmaoAnterior;
+        private final int[] qtdFilhos;
+        private final int[] rotulo; // -1 nas folhas
+        private int qtdNos;
+        private int raiz = -1;
+
+        // Marcas da inserção atual, todas usam o mesmo carimbo (só reconhece escreve nelas)
+        private final int[] marcaCheio;
+        private final int[] marcaMd;
+        private final int[] md;
+        private final int[] marcaCaminho;
+        private final int[] filhosMistos;
+        private int carimbo;
+
+        private Coarvore(Grafo grafo) {
+            this.grafo = grafo;
+            this.n = grafo.getQtdVertices();
+            int capacidade = 2 * n + 2; // Cada inserção cria no máximo dois nós internos
+            pai = new int[capacidade];
+            primeiroFilho = new int[capacidade];
+            proximoIrmao = new int[capacidade];
+            irmaoAnterior = new int[capacidade];
+            qtdFilhos = new int[capacidade];
+            rotulo = new int[capacidade];
+            marcaCheio = new int[capacidade];
+            marcaMd = new int[capacidade];
+            md = new int[capacidade];
+            marcaCaminho = new int[capacidade];
+            filhosMistos = new int[capacidade];
+            Arrays.fill(pai, -1);
+            Arrays.fill(primeiroFilho, -1);
+            Arrays.fill(rotulo, -1);
+            qtdNos = n;
+        }
+
+        /**
+         * Função que monta a coárvore do grafo, se ele for um cografo (não possui P4 induzido).
+         *
+         * @param grafo Grafo.
+         * @return A coárvore, ou null se o grafo não é um cografo.
+         */
+        public static Coarvore reconhece(Grafo grafo) {
+            IteradorDeVizinhos vizinhos = grafo.iterador();
+            Coarvore arvore = new Coarvore(grafo);
+            for (int x = 0; x < grafo.getQtdVertices(); x++) {
+                vizinhos.comeca(x);
+                if (!arvore.insere(x, vizinhos, grafo.grau(x))) return null;
+            }
+            return arvore;
+        }
+
+        private int novoNo(int rotuloDoNo) {
+            int no = qtdNos++;
+            rotulo[no] = rotuloDoNo;
+            return no;
+        }
+
+        private void adicionaFilho(int p, int filho) {
+            pai[filho] = p;
+            irmaoAnterior[filho] = -1;
+            proximoIrmao[filho] = primeiroFilho[p];
+            if (primeiroFilho[p] >= 0) irmaoAnterior[primeiroFilho[p]] = filho;
+            primeiroFilho[p] = filho;
+            qtdFilhos[p]++;
+        }
+
+        private void removeFilho(int filho) {
+            int p = pai[filho];
+            if (irmaoAnterior[filho] >= 0) proximoIrmao[irmaoAnterior[filho]] = proximoIrmao[filho];
+            else primeiroFilho[p] = proximoIrmao[filho];
+            if (proximoIrmao[filho] >= 0) irmaoAnterior[proximoIrmao[filho]] = irmaoAnterior[filho];
+            pai[filho] = -1;
+            qtdFilhos[p]--;
+        }
+
+        /**
+         * Função que coloca o nó novo no lugar do nó velho e deixa o velho sem pai.
+         */
+        private void substitui(int velho, int novo) {
+            int p = pai[velho];
+            if (p < 0) {
+                raiz = novo;
+                return;
+            }
+            removeFilho(velho);
+            adicionaFilho(p, novo);
+        }
+
+        private int md(int no) {
+            return marcaMd[no] == carimbo ? md[no] : 0;
+        }
+
+        private boolean cheio(int no) {
+            return marcaCheio[no] == carimbo;
+        }
+
+        /**
+         * Função que pendura x em um nó com o rótulo pedido acima da raiz atual.
+         */
+        private void juntaNaRaiz(int x, int rotuloDaJuncao) {
+            if (rotulo[raiz] == rotuloDaJuncao) {
+                adicionaFilho(raiz, x);
+                return;
+            }
+            int novo = novoNo(rotuloDaJuncao);
+            adicionaFilho(novo, raiz);
+            adicionaFilho(novo, x);
+            raiz = novo;
+        }
+
+        /**
+         * Função que insere o vértice x considerando apenas os vizinhos já inseridos (menores que x).
+         * @return False se o grafo com x deixa de ser um cografo.
+         */
+        private boolean insere(int x, IteradorDeVizinhos vizinhos, int grau) {
+            if (raiz < 0) {
+                raiz = x;
+                return true;
+            }
+            carimbo++;
+
+            // Marca as folhas vizinhas e sobe contando os filhos cheios de cada nó
+            int[] fila = new int[2 * Math.max(1, grau) + 1];
+            int inicio = 0, fim = 0, qtdVizinhos = 0;
+            for (int v = vizinhos.proximo(); v >= 0; v = vizinhos.proximo()) {
+                if (v >= x) continue;
+                qtdVizinhos++;
+                marcaCheio[v] = carimbo;
+                fila[fim++] = v;
+            }
+            if (qtdVizinhos == 0) {
+                juntaNaRaiz(x, 0);
+                return true;
+            }
+            if (qtdVizinhos == x) {
+                juntaNaRaiz(x, 1);
+                return true;
+            }
+
+            int[] tocados = new int[fila.length];
+            int qtdTocados = 0;
+            while (inicio < fim) {
+                int f = fila[inicio++];
+                int p = pai[f];
+                if (p < 0) continue;
+                if (marcaMd[p] != carimbo) {
+                    marcaMd[p] = carimbo;
+                    md[p] = 0;
+                    tocados[qtdTocados++] = p;
+                }
+                if (++md[p] == qtdFilhos[p]) {
+                    marcaCheio[p] = carimbo;
+                    fila[fim++] = p;
+                }
+            }
+
+            // Sobe de cada nó parcial até a raiz conferindo se os mistos formam um caminho
+            int u = -1;
+            int qtdSemFilhoMisto = 0;
+            for (int t = 0; t < qtdTocados; t++) {
+                int no = tocados[t];
+                if (cheio(no) || marcaCaminho[no] == carimbo) continue;
+                marcaCaminho[no] = carimbo;
+                filhosMistos[no] = 0;
+                qtdSemFilhoMisto++;
+                while (pai[no] >= 0) {
+                    int p = pai[no];
+                    boolean visitado = marcaCaminho[p] == carimbo;
+                    if (!visitado) {
+                        marcaCaminho[p] = carimbo;
+                        filhosMistos[p] = 0;
+                    } else if (filhosMistos[p] == 0) {
+                        qtdSemFilhoMisto--;
+                    }
+                    if (++filhosMistos[p] > 1) return false;
+                    if (rotulo[p] == 1 ? md(p) != qtdFilhos[p] - 1 : md(p) != 0) return false;
+                    if (visitado) break;
+                    no = p;
+                }
+            }
+            if (qtdSemFilhoMisto != 1) return false;
+            for (int t = 0; t < qtdTocados && u < 0; t++) {
+                int no = tocados[t];
+                if (!cheio(no) && filhosMistos[no] == 0) u = no;
+            }
+
+            // Lista os filhos cheios de u antes de mexer na árvore
+            int[] cheiosDeU = new int[md(u)];
+            int qtdCheios = 0;
+            for (int t = 0; t < fim; t++) {
+                if (pai[fila[t]] == u) cheiosDeU[qtdCheios++] = fila[t];
+            }
+
+            if (rotulo[u] == 1) { // x vê os filhos cheios e não vê os vazios
+                if (qtdFilhos[u] - qtdCheios == 1) {
+                    int vazio = primeiroFilho[u];
+                    while (cheio(vazio)) vazio = proximoIrmao[vazio];
+                    penduraJunto(vazio, x, 0);
+                } else {
+                    int novoU = novoNo(1);
+                    substitui(u, novoU);
+                    for (int f : cheiosDeU) {
+                        removeFilho(f);
+                        adicionaFilho(novoU, f);
+                    }
+                    int uniao = novoNo(0);
+                    adicionaFilho(uniao, x);
+                    adicionaFilho(uniao, u);
+                    adicionaFilho(novoU, uniao);
+                }
+            } else { // x vê os filhos cheios, que passam a ficar junto de x
+                if (qtdCheios == 1) {
+                    penduraJunto(cheiosDeU[0], x, 1);
+                } else {
+                    int juncao = novoNo(1);
+                    int uniao = novoNo(0);
+                    for (int f : cheiosDeU) {
+                        removeFilho(f);
+                        adicionaFilho(uniao, f);
+                    }
+                    adicionaFilho(juncao, x);
+                    adicionaFilho(juncao, uniao);
+                    adicionaFilho(u, juncao);
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Função que deixa x como irmão do nó dentro de um nó com o rótulo pedido: se o nó já
+         * possui esse rótulo x vira seu filho, senão (o nó é uma folha) um novo nó é criado.
+         */
+        private void penduraJunto(int no, int x, int rotuloDaJuncao) {
+            if (rotulo[no] == rotuloDaJuncao) {
+                adicionaFilho(no, x);
+                return;
+            }
+            int novo = novoNo(rotuloDaJuncao);
+            substitui(no, novo);
+            adicionaFilho(novo, no);
+            adicionaFilho(novo, x);
+        }
+
+        /**
+         * Função para decidir se dois vértices são vizinhos pelo rótulo do ancestral comum mais baixo.
+         *
+         * <p>
+         *     O ancestral é achado só com leituras: o vértice mais fundo sobe até a altura do outro e
+         *     os dois sobem juntos até se encontrarem. Como nada é escrito, a mesma coárvore pode ser
+         *     consultada por várias threads ao mesmo tempo.
+         * </p>
+         */
+        public boolean adjacentes(int u, int v) {
+            if (u == v) return false;
+            int profundidadeU = profundidade(u), profundidadeV = profundidade(v);
+            for (; profundidadeU > profundidadeV; profundidadeU--) u = pai[u];
+            for (; profundidadeV > profundidadeU; profundidadeV--) v = pai[v];
+            while (u != v) {
+                u = pai[u];
+                v = pai[v];
+            }
+            return rotulo[u] == 1;
+        }
+
+        private int profundidade(int no) {
+            int profundidade = 0;
+            for (no = pai[no]; no >= 0; no = pai[no]) profundidade++;
+            return profundidade;
+        }
+
+        public int getRaiz() {
+            return raiz;
+        }
+
+        public int getPai(int no) {
+            return pai[no];
+        }
+
+        public int getPrimeiroFilho(int no) {
+            return primeiroFilho[no];
+        }
+
+        public int getProximoIrmao(int no) {
+            return proximoIrmao[no];
+        }
+
+        /**
+         * @return 0 para união, 1 para junção e -1 para as folhas (vértices).
+         */
+        public int getRotulo(int no) {
+            return rotulo[no];
+        }
+
+        public int getQtdVertices() {
+            return n;
+        }
+
+        public int getQtdNos() {
+            return qtdNos;
+        }
+
+        /**
+         * @return O número original do vértice da folha (ver <i>Grafo.getId</i>), ou -1 nos nós internos.
+         */
+        public long getId(int no) {
+            return no < n ? grafo.getId(no) : -1;
+        }
+
+        /**
+         * Função para descrever a coárvore com os números originais dos vértices, por exemplo
+         * "1(7 0(3 5))": cada nó interno é o rótulo seguido dos filhos entre parênteses. A árvore
+         * é percorrida com uma pilha, pois a altura pode chegar a n.
+         */
+        @Override
+        public String toString() {
+            if (raiz < 0) return "";
+            StringBuilder texto = new StringBuilder();
+            int[] pilha = new int[2 * qtdNos]; // Cada nó entra uma vez e cada nó interno deixa uma marca de fim
+            int topo = 0;
+            pilha[topo++] = raiz;
+            while (topo > 0) {
+                int no = pilha[--topo];
+                if (no < 0) { // Marca de fim dos filhos de ~no
+                    texto.append(')');
+                    continue;
+                }
+                if (texto.length() > 0 && texto.charAt(texto.length() - 1) != '(') texto.append(' ');
+                if (no < n) {
+                    texto.append(grafo.getId(no));
+                    continue;
+                }
+                texto.append(rotulo[no]).append('(');
+                pilha[topo++] = ~no;
+                int inicio = topo;
+                for (int filho = primeiroFilho[no]; filho >= 0; filho = proximoIrmao[filho]) pilha[topo++] = filho;
+                for (int i = inicio, j = topo - 1; i < j; i++, j--) { // O primeiro filho sai primeiro
+                    int troca = pilha[i];
+                    pilha[i] = pilha[j];
+                    pilha[j] = troca;
+                }
+            }
+            return texto.toString();
+        }
+    }
+
+    /**
+     * Função que decide se o grafo é um cografo, ou seja, se não possui P4 induzido.
+     * Para obter a coárvore use <i>Coarvore.reconhece</i>.
+     *
+     * @param grafo Grafo.
+     * @return True se o grafo é um cografo e False caso contrário.
+     */
+    static boolean isCografo(Grafo grafo) {
+        return Coarvore.reconhece(grafo) != null;
+    }
+
+    /**
+     * Classe com o resultado de <i>reconheceP4SparsePorDecomposicao</i>: a resposta e, quando o grafo é
+     * um cografo, a coárvore montada no caminho, para consultas posteriores sem refazer o trabalho.
+     */
+    static class ReconhecimentoP4Esparso {
+        private final boolean p4Esparso;
+        private final Coarvore coarvore; // null se o grafo não é um cografo
+
+        public ReconhecimentoP4Esparso(boolean p4Esparso, Coarvore coarvore) {
+            this.p4Esparso = p4Esparso;
+            this.coarvore = coarvore;
+        }
+
+        public boolean isP4Esparso() {
+            return p4Esparso;
+        }
+
+        public boolean isCografo() {
+            return coarvore != null;
+        }
+
+        /**
+         * @return A coárvore do grafo, ou null se ele não é um cografo.
+         */
+        public Coarvore getCoarvore() {
+            return coarvore;
+        }
+    }
+
+    /**
+     * Função que decide se o grafo é P4-esparso usando a decomposição em aranhas e devolve
+     * também a coárvore, se o grafo for um cografo. Nesse caso a resposta sai direto de
+     * <i>Coarvore.reconhece</i>, sem a decomposição.
+     *
+     * @param grafo Grafo completo.
+     * @return A resposta e a coárvore (ver <i>ReconhecimentoP4Esparso</i>).
+     */
+    static ReconhecimentoP4Esparso reconheceP4SparsePorDecomposicao(Grafo grafo) {
+        Coarvore coarvore = Coarvore.reconhece(grafo);
+        if (coarvore != null) return new ReconhecimentoP4Esparso(true, coarvore); // Sem P4 induzido não há 5 vértices com dois P4
+        if (grafo.getQtdVertices() < 5) return new ReconhecimentoP4Esparso(true, null);
+        return new ReconhecimentoP4Esparso(new DecomposicaoP4Esparsa(grafo).verifica(), null);
+    }
+
+    /**
+     * Função que decide se o grafo é P4-esparso usando a decomposição em aranhas, em O(n * (n + m))
+     * no pior caso. Dá a mesma resposta que <i>isP4Sparse</i> sem gerar os subconjuntos de 5 vértices.
+     * Para guardar a coárvore de um cografo use <i>reconheceP4SparsePorDecomposicao</i>.
+     *
+     * @param grafo Grafo completo.
+     * @return True se o grafo é P4-esparso e False caso contrário.
+     */
+    static boolean isP4SparsePorDecomposicao(Grafo grafo) {
+        return reconheceP4SparsePorDecomposicao(grafo).isP4Esparso();
+    }
+
+    /**
+     * Interface para receber os P4 induzidos encontrados pelo <i>EnumeradorDeP4</i>.
+     */
+    interface VisitanteP4 {
+        /**
+         * Função chamada para cada P4 induzido a - b - c - d.
+         * @return False para interromper a enumeração, True para continuar.
+         */
+        boolean visita(int a, int b, int c, int d);
+    }
+
+    /**
+     * Classe que enumera os P4 induzidos do grafo pela aresta do meio.
+     *
+     * <p>
+     *     Todo P4 induzido a - b - c - d possui uma única aresta do meio (b, c). Para cada aresta
+     *     com b &lt; c os extremos são a em N(b) \ N[c] e d em N(c) \ N[b] com a e d não vizinhos,
+     *     então cada P4 é encontrado exatamente uma vez. As vizinhanças de b e c são marcadas com
+     *     carimbos, assim as diferenças custam O(1) por vértice percorrido.
+     *
+     *     Dois P4 induzidos no mesmo conjunto de 5 vértices compartilham 3 vértices e o quinto
+     *     vértice é vizinho de algum vértice do primeiro P4, senão o conjunto teria um vértice
+     *     isolado e apenas um P4. Por isso <i>isP4Sparse</i> só estende cada P4 com os vértices
+     *     da união das vizinhanças dos seus 4 vértices, o que dá um algoritmo que depende da
+     *     quantidade de P4 do grafo e não de C(n, 5).
+     * </p>
+     */
+    static class EnumeradorDeP4 {
+        private final Grafo grafo;
+        private final IteradorDeVizinhos itW, itC, itA, itD, itX; // Um iterador por nível de laço
+        private final int[] marcaB;  // Vizinhos do vértice b atual
+        private final int[] marcaC;  // Vizinhos do vértice c atual
+        private final int[] marcaX;  // Vértices já usados para estender o P4 atual
+        private int carimboB, carimboC, carimboX;
+        private long limite;          // Quantidade máxima de violações entregues por <i>violacoes</i>
+        private long encontradas;
+        private Consumer<Testemunha> saida;
+
+        public EnumeradorDeP4(Grafo grafo) {
+            this.grafo = grafo;
+            this.itW = grafo.iterador();
+            this.itC = grafo.iterador();
+            this.itA = grafo.iterador();
+            this.itD = grafo.iterador();
+            this.itX = grafo.iterador();
+            this.marcaB = new int[grafo.getQtdVertices()];
+            this.marcaC = new int[grafo.getQtdVertices()];
+            this.marcaX = new int[grafo.getQtdVertices()];
+        }
+
+        private boolean adjacentes(int u, int v) {
+            return grafo.adjacentes(u, v);
+        }
+
+        /**
+         * Função que chama o visitante para cada P4 induzido do grafo.
+         *
+         * @param visitante Objeto que recebe cada P4 na ordem a - b - c - d.
+         * @return True se a enumeração terminou e False se o visitante a interrompeu.
+         */
+        public boolean paraCadaP4(VisitanteP4 visitante) {
+            for (int b = 0; b < grafo.getQtdVertices(); b++) {
+                if (grafo.grau(b) < 2) continue; // b precisa de a e de c
+                carimboB = novoCarimbo(marcaB, carimboB);
+                itW.comeca(b);
+                for (int w = itW.proximo(); w >= 0; w = itW.proximo()) {
+                    marcaB[w] = carimboB;
+                }
+
+                itC.comeca(b);
+
+                for (int c = itC.proximo(); c >= 0; c = itC.proximo()) {
+                    if (c < b || grafo.grau(c) < 2) continue;
+                    carimboC = novoCarimbo(marcaC, carimboC);
+                    itW.comeca(c);
+                    for (int w = itW.proximo(); w >= 0; w = itW.proximo()) {
+                        marcaC[w] = carimboC;
+                    }
+
+                    itA.comeca(b);
+
+                    for (int a = itA.proximo(); a >= 0; a = itA.proximo()) {
+                        if (a == c || marcaC[a] == carimboC) continue; // a em N(b) \ N[c]
+                        itD.comeca(c);
+                        for (int d = itD.proximo(); d >= 0; d = itD.proximo()) {
+                            if (d == b || marcaB[d] == carimboB) continue; // d em N(c) \ N[b]
+                            if (adjacentes(a, d)) continue;
+                            if (!visitante.visita(a, b, c, d)) return false;
+                        }
+                    }
+                }
+            }
+            return true;
+        }
+
+        private static int novoCarimbo(int[] marca, int carimbo) {
+            if (carimbo == Integer.MAX_VALUE) {
+                Arrays.fill(marca, 0);
+                carimbo = 0;
+            }
+            return carimbo + 1;
+        }
+
+        /**
+         * Função que decide se o grafo é P4-esparso estendendo cada P4 induzido com os vértices
+         * vizinhos a ele e consultando a tabela <i>P4_POR_MASCARA</i>.
+         * @return True se o grafo é P4-esparso e False caso contrário.
+         */
+        public boolean isP4Sparse() {
+            return violacoes(1, null) == 0;
+        }
+
+        /**
+         * Função que procura os conjuntos de 5 vértices que induzem mais de um P4.
+         *
+         * <p>
+         *     Um conjunto com vários P4 é alcançado uma vez para cada P4 que ele contém, sempre
+         *     com o vértice de fora do P4 no papel de x. Para entregar cada conjunto uma única
+         *     vez só aceitamos o caso em que x é o maior vértice cuja retirada deixa um P4
+         *     (ver <i>P4_FORA_POR_MASCARA</i>). Assim nenhuma lista de conjuntos é guardada e
+         *     cada violação é entregue assim que é encontrada.
+         * </p>
+         *
+         * @param limite Quantidade máxima de violações, ou zero para todas.
+         * @param saida Objeto que recebe cada violação, pode ser null quando só a contagem interessa.
+         * @return Quantidade de violações encontradas.
+         */
+        public long violacoes(long limite, Consumer<Testemunha> saida) {
+            this.limite = limite;
+            this.saida = saida;
+            this.encontradas = 0;
+            paraCadaP4(this::estende);
+            return encontradas;
+        }
+
+        /**
+         * Função que testa os conjuntos de 5 vértices formados pelo P4 a - b - c - d e um vizinho x.
+         * @return False quando o limite de violações foi atingido.
+         */
+        private boolean estende(int a, int b, int c, int d) {
+            carimboX = novoCarimbo(marcaX, carimboX);
+            marcaX[a] = marcaX[b] = marcaX[c] = marcaX[d] = carimboX;
+            return estendeComVizinhos(a, a, b, c, d)
+                    && estendeComVizinhos(b, a, b, c, d)
+                    && estendeComVizinhos(c, a, b, c, d)
+                    && estendeComVizinhos(d, a, b, c, d);
+        }
+
+        private boolean estendeComVizinhos(int v, int a, int b, int c, int d) {
+            // Posições 0 a 3 são a, b, c, d e a posição 4 é o vértice x
+            final int caminho = 1 << bitDoPar(0, 1) | 1 << bitDoPar(1, 2) | 1 << bitDoPar(2, 3);
+            itX.comeca(v);
+            for (int x = itX.proximo(); x >= 0; x = itX.proximo()) {
+                if (marcaX[x] == carimboX) continue;
+                marcaX[x] = carimboX;
+                int mascara = caminho
+                        | (adjacentes(x, a) ? 1 << bitDoPar(0, 4) : 0)
+                        | (adjacentes(x, b) ? 1 << bitDoPar(1, 4) : 0)
+                        | (adjacentes(x, c) ? 1 << bitDoPar(2, 4) : 0)
+                        | (adjacentes(x, d) ? 1 << bitDoPar(3, 4) : 0);
+                if (P4_POR_MASCARA[mascara] < 2) continue;
+
+                int posicoes = P4_FORA_POR_MASCARA[mascara];
+                if (((posicoes & 1) != 0 && a > x) || ((posicoes & 2) != 0 && b > x)
+                        || ((posicoes & 4) != 0 && c > x) || ((posicoes & 8) != 0 && d > x)) {
+                    continue; // O conjunto será entregue quando o maior desses vértices for o x
+                }
+
+                encontradas++;
+                if (saida != null) saida.accept(Testemunha.de(new int[]{a, b, c, d, x}, mascara));
+                if (encontradas == limite) return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Função que decide se o grafo é P4-esparso a partir da lista de P4 induzidos.
+     * Dá a mesma resposta que <i>isP4Sparse</i> e em grafos esparsos com poucos P4 é bem mais rápida.
+     * Se o grafo for um cografo a resposta sai direto de <i>isCografo</i>.
+     *
+     * @param grafo Grafo completo.
+     * @return True se o grafo é P4-esparso e False caso contrário.
+     */
+    static boolean isP4SparsePorP4(Grafo grafo) {
+        if (grafo.getQtdVertices() < 5) return true;
+        if (isCografo(grafo)) return true;
+        return new EnumeradorDeP4(grafo).isP4Sparse();
+    }
+
+    /**
+     * Função que devolve uma testemunha de que o grafo não é P4-esparso.
+     *
+     * @param grafo Grafo completo.
+     * @return Um conjunto de 5 vértices com dois P4 induzidos, ou null se o grafo é P4-esparso.
+     */
+    static Testemunha testemunhaP4Sparse(Grafo grafo) {
+        if (grafo.getQtdVertices() < 5) return null;
+        Testemunha[] resultado = new Testemunha[1];
+        new EnumeradorDeP4(grafo).violacoes(1, t -> resultado[0] = t);
+        return resultado[0];
+    }
+
+    /**
+     * Função que entrega, assim que são encontrados, todos os conjuntos de 5 vértices que induzem
+     * mais de um P4. Cada conjunto é entregue uma única vez e nada é acumulado em memória.
+     *
+     * @param grafo Grafo completo.
+     * @param limite Quantidade máxima de conjuntos, ou zero para todos.
+     * @param saida Objeto que recebe cada conjunto.
+     * @return Quantidade de conjuntos entregues.
+     */
+    static long listaViolacoes(Grafo grafo, long limite, Consumer<Testemunha> saida) {
+        if (grafo.getQtdVertices() < 5) return 0;
+        return new EnumeradorDeP4(grafo).violacoes(limite, saida);
+    }
+
+    /**
+     * Classe com o resultado do censo de P4 induzidos do grafo.
+     * <p>
+     *     Guarda a quantidade total de P4 induzidos e, para cada vértice, de quantos deles
+     *     o vértice participa. A soma das contagens por vértice é 4 vezes o total.
+     * </p>
+     */
+    static class CensoDeP4 {
+        private final long total;
+        private final long[] porVertice;
+
+        public CensoDeP4(long total, long[] porVertice) {
+            this.total = total;
+            this.porVertice = porVertice;
+        }
+
+        public long getTotal() {
+            return total;
+        }
+
+        public long getPorVertice(int vertex) {
+            return porVertice[vertex];
+        }
+
+        public long[] getPorVertice() {
+            return porVertice;
+        }
+    }
+
+    /**
+     * Função que conta todos os P4 induzidos do grafo sem listá-los.
+     *
+     * <p>
+     *     Para cada aresta (b, c) com b &lt; c, que é a aresta do meio dos P4 que ela forma,
+     *     os extremos possíveis são A = N(b) \ N[c] e D = N(c) \ N[b] e a quantidade de P4 é
+     *     |A| * |D| menos as arestas entre A e D. As arestas entre A e D são contadas
+     *     intersectando a vizinhança de cada vértice de um dos lados com o outro lado, sempre
+     *     pelo lado cuja soma de graus é menor. A mesma varredura dá, para cada extremo, com
+     *     quantos vértices do outro lado ele forma um P4.
+     *
+     *     O custo é proporcional às arestas vezes o grau dos extremos, em vez de testar
+     *     todos os C(n, 4) conjuntos com <i>isP4</i>.
+     * </p>
+     *
+     * @param grafo Grafo completo.
+     * @return O censo com o total e as contagens por vértice (indexadas pelo índice do vértice, ver <i>Grafo.getId</i>).
+     */
+    static CensoDeP4 censoDeP4(Grafo grafo) {
+        int n = grafo.getQtdVertices();
+        IteradorDeVizinhos itW = grafo.iterador(), itC = grafo.iterador(), itA = grafo.iterador();
+        IteradorDeVizinhos itD = grafo.iterador(), itU = grafo.iterador();
+        long[] porVertice = new long[n];
+        long total = 0;
+
+        int[] marcaB = new int[n], marcaC = new int[n];
+        int[] vizinhosNoOutroLado = new int[n];
+        int carimboB = 0, carimboC = 0;
+
+        for (int b = 0; b < n; b++) {
+            carimboB = EnumeradorDeP4.novoCarimbo(marcaB, carimboB);
+            itW.comeca(b);
+            for (int w = itW.proximo(); w >= 0; w = itW.proximo()) {
+                marcaB[w] = carimboB;
+            }
+
+            itC.comeca(b);
+
+            for (int c = itC.proximo(); c >= 0; c = itC.proximo()) {
+                if (c < b) continue;
+                carimboC = EnumeradorDeP4.novoCarimbo(marcaC, carimboC);
+                itW.comeca(c);
+                for (int w = itW.proximo(); w >= 0; w = itW.proximo()) {
+                    marcaC[w] = carimboC;
+                }
+
+                int comuns = grafo.vizinhosEmComum(b, c);
+                long tamA = grafo.grau(b) - 1 - comuns;
+                long tamD = grafo.grau(c) - 1 - comuns;
+                if (tamA == 0 || tamD == 0) continue;
+
+                long somaGrausA = 0, somaGrausD = 0;
+                itA.comeca(b);
+                for (int a = itA.proximo(); a >= 0; a = itA.proximo()) {
+                    if (a != c && marcaC[a] != carimboC) somaGrausA += grafo.grau(a);
+                }
+                itD.comeca(c);
+                for (int d = itD.proximo(); d >= 0; d = itD.proximo()) {
+                    if (d != b && marcaB[d] != carimboB) somaGrausD += grafo.grau(d);
+                }
+
+                // Varre o lado mais barato; "lado" é A ou D e "outro" é o lado oposto
+                boolean varreA = somaGrausA <= somaGrausD;
+                int centroLado = varreA ? b : c, centroOutro = varreA ? c : b;
+                int[] marcaLado = varreA ? marcaB : marcaC, marcaOutro = varreA ? marcaC : marcaB;
+                int carimboLado = varreA ? carimboB : carimboC, carimboOutro = varreA ? carimboC : carimboB;
+                long tamLado = varreA ? tamA : tamD, tamOutro = varreA ? tamD : tamA;
+
+                long arestasEntreLados = 0;
+                itU.comeca(centroLado);
+                for (int u = itU.proximo(); u >= 0; u = itU.proximo()) {
+                    if (u == centroOutro || marcaOutro[u] == carimboOutro) continue; // u pertence ao lado
+                    long vizinhos = 0;
+                    itW.comeca(u);
+                    for (int w = itW.proximo(); w >= 0; w = itW.proximo()) {
+                        if (w != centroLado && marcaOutro[w] == carimboOutro && marcaLado[w] != carimboLado) { // w no outro lado
+                            vizinhos++;
+                            vizinhosNoOutroLado[w]++;
+                        }
+                    }
+                    porVertice[u] += tamOutro - vizinhos;
+                    arestasEntreLados += vizinhos;
+                }
+                itW.comeca(centroOutro);
+                for (int w = itW.proximo(); w >= 0; w = itW.proximo()) {
+                    if (w == centroLado || marcaLado[w] == carimboLado) continue; // w pertence ao outro lado
+                    porVertice[w] += tamLado - vizinhosNoOutroLado[w];
+                    vizinhosNoOutroLado[w] = 0;
+                }
+
+                long qtdP4 = tamA * tamD - arestasEntreLados;
+                porVertice[b] += qtdP4;
+                porVertice[c] += qtdP4;
+                total += qtdP4;
+            }
+        }
+        return new CensoDeP4(total, porVertice);
+    }
+
+    /**
+     * Classe para verificar grafos com no máximo 64 vértices usando um long por linha de adjacência.
+     *
+     * <p>
+     *     Todo conjunto de vértices é um long e as operações de conjunto são operações de bits:
+     *     os candidatos a extremos do P4 a - b - c - d com aresta central b - c (b &lt; c) são
+     *     N(b) \ N[c] e N(c) \ N[b], e d precisa também estar fora de N(a). Cada P4 é estendido
+     *     pelos vértices da vizinhança dos seus 4 vértices e o conjunto de 5 vértices é testado
+     *     retirando um vértice de cada vez. Um conjunto de 4 vértices induz um P4 se, e somente
+     *     se, dois deles possuem um vizinho no conjunto e os outros dois possuem dois vizinhos,
+     *     o que custa 4 bitCount.
+     *
+     *     Nenhuma coleção é criada e o único objeto alocado, além do vetor de linhas, é a
+     *     testemunha quando o grafo não é P4-esparso.
+     * </p>
+     */
+    static class MotorBitboard {
+        public static final int MAXIMO_DE_VERTICES = 64;
+
+        private final int n;
+        private final long[] adj;
+
+        public MotorBitboard(Grafo grafo) {
+            this.n = grafo.getQtdVertices();
+            if (n > MAXIMO_DE_VERTICES) {
+                throw new IllegalArgumentException("O grafo possui " + n + " vértices, o máximo é " + MAXIMO_DE_VERTICES);
+            }
+            if (grafo instanceof GrafoDenso && ((GrafoDenso) grafo).getPalavras() == 1) {
+                this.adj = ((GrafoDenso) grafo).getLinhas(); // Já é uma linha de um long por vértice
+            } else {
+                this.adj = new long[n];
+                IteradorDeVizinhos itW = grafo.iterador();
+                for (int v = 0; v < n; v++) {
+                    itW.comeca(v);
+                    for (int w = itW.proximo(); w >= 0; w = itW.proximo()) adj[v] |= 1L << w;
+                }
+            }
+        }
+
+        /**
+         * Função para decidir se o conjunto de 4 vértices induz um P4.
+         */
+        private boolean isP4(long conjunto) {
+            int grauUm = 0, grauDois = 0;
+            for (long resto = conjunto; resto != 0; resto &= resto - 1) {
+                int grau = Long.bitCount(adj[Long.numberOfTrailingZeros(resto)] & conjunto);
+                if (grau == 1) grauUm++;
+                else if (grau == 2) grauDois++;
+            }
+            return grauUm == 2 && grauDois == 2;
+        }
+
+        /**
+         * Função para contar quantos P4 o conjunto de 5 vértices induz.
+         */
+        private int contaP4(long conjunto) {
+            int qtd = 0;
+            for (long resto = conjunto; resto != 0; resto &= resto - 1) {
+                if (isP4(conjunto & ~(resto & -resto))) qtd++;
+            }
+            return qtd;
+        }
+
+        public boolean isP4Sparse() {
+            return testemunha() == null;
+        }
+
+        /**
+         * Função que procura um conjunto de 5 vértices que induz mais de um P4.
+         *
+         * @return A testemunha, ou null se o grafo é P4-esparso.
+         */
+        public Testemunha testemunha() {
+            for (int b = 0; b < n; b++) {
+                for (long cs = adj[b] & (-2L << b); cs != 0; cs &= cs - 1) { // Vizinhos c > b
+                    int c = Long.numberOfTrailingZeros(cs);
+                    long centro = (1L << b) | (1L << c);
+                    long as = adj[b] & ~adj[c] & ~centro;
+                    long ds = adj[c] & ~adj[b] & ~centro;
+                    if (ds == 0) continue;
+
+                    for (; as != 0; as &= as - 1) {
+                        int a = Long.numberOfTrailingZeros(as);
+                        for (long dd = ds & ~adj[a]; dd != 0; dd &= dd - 1) {
+                            int d = Long.numberOfTrailingZeros(dd);
+                            long p4 = centro | (1L << a) | (1L << d);
+                            long extensoes = (adj[a] | adj[b] | adj[c] | adj[d]) & ~p4;
+                            for (; extensoes != 0; extensoes &= extensoes - 1) {
+                                long conjunto = p4 | (extensoes & -extensoes);
+                                if (contaP4(conjunto) > 1) return testemunhaDe(conjunto);
+                            }
+                        }
+                    }
+                }
+            }
+            return null;
+        }
+
+        private Testemunha testemunhaDe(long conjunto) {
+            int[] vertices = new int[5];
+            int k = 0;
+            for (long resto = conjunto; resto != 0; resto &= resto - 1) vertices[k++] = Long.numberOfTrailingZeros(resto);
+
+            int mascara = 0;
+            for (int j = 1; j < 5; j++) {
+                for (int i = 0; i < j; i++) {
+                    if ((adj[vertices[i]] >>> vertices[j] & 1) != 0) mascara |= 1 << bitDoPar(i, j);
+                }
+            }
+            return Testemunha.de(vertices, mascara);
+        }
+    }
+
+    /**
+     * Função para decidir se o grafo é P4-esparso escolhendo o algoritmo pelo tamanho do grafo.
+     *
+     * <p>
+     *     Grafos com até 64 vértices usam o <i>MotorBitboard</i>, os demais usam
+     *     <i>testemunhaPorDecomposicao</i>.
+     * </p>
+     *
+     * @param grafo Grafo completo.
+     * @return Uma testemunha, ou null se o grafo é P4-esparso.
+     */
+    static Testemunha verificaP4Sparse(Grafo grafo) {
+        if (grafo.getQtdVertices() <= MotorBitboard.MAXIMO_DE_VERTICES) return new MotorBitboard(grafo).testemunha();
+        return testemunhaPorDecomposicao(grafo);
+    }
+
+    /**
+     * Função que decide se o grafo é P4-esparso usando a decomposição em aranhas e, quando não é,
+     * tira a testemunha do conjunto onde a decomposição parou (ver <i>DecomposicaoP4Esparsa.testemunha</i>),
+     * sem enumerar os P4 do grafo inteiro.
+     *
+     * @param grafo Grafo completo.
+     * @return Uma testemunha, ou null se o grafo é P4-esparso.
+     */
+    static Testemunha testemunhaPorDecomposicao(Grafo grafo) {
+        if (grafo.getQtdVertices() < 5 || isCografo(grafo)) return null;
+        DecomposicaoP4Esparsa decomposicao = new DecomposicaoP4Esparsa(grafo);
+        return decomposicao.verifica() ? null : decomposicao.testemunha();
+    }
+
+    /**
+     * Interface dos reconhecedores de grafos P4-esparsos.
+     *
+     * <p>
+     *     Os reconhecedores não guardam estado: tudo o que uma verificação usa fica em variáveis
+     *     locais ou em objetos criados por ela. O mesmo reconhecedor pode verificar vários grafos
+     *     ao mesmo tempo, em threads diferentes (ver <i>verificaEmParalelo</i>).
+     * </p>
+     */
+    interface ReconhecedorP4Esparso {
+        /**
+         * @return Uma testemunha, ou null se o grafo é P4-esparso.
+         */
+        Testemunha testemunha(Grafo grafo);
+
+        default boolean isP4Sparse(Grafo grafo) {
+            return testemunha(grafo) == null;
+        }
+    }
+
+    static final ReconhecedorP4Esparso FORCA_BRUTA = grafo -> isP4Sparse(grafo) ? null : testemunhaP4Sparse(grafo);
+    static final ReconhecedorP4Esparso DECOMPOSICAO = AlgGrafos::testemunhaPorDecomposicao;
+    static final ReconhecedorP4Esparso POR_P4 = AlgGrafos::testemunhaP4Sparse;
+    static final ReconhecedorP4Esparso BITBOARD = grafo -> new MotorBitboard(grafo).testemunha();
+    static final ReconhecedorP4Esparso AUTOMATICO = AlgGrafos::verificaP4Sparse;
+
+    /**
+     * Função que verifica vários grafos ao mesmo tempo, uma tarefa por grafo no pool dado.
+     *
+     * @param grafos Grafos a serem verificados.
+     * @param reconhecedor Reconhecedor usado em todos os grafos.
+     * @param pool Pool compartilhado onde as tarefas serão executadas.
+     * @return A testemunha de cada grafo, na ordem da lista, com null para os P4-esparsos.
+     */
+    static Testemunha[] verificaEmParalelo(List<Grafo> grafos, ReconhecedorP4Esparso reconhecedor, ForkJoinPool pool) {
+        List<ForkJoinTask<Testemunha>> tarefas = new ArrayList<>(grafos.size());
+        for (Grafo grafo : grafos) tarefas.add(pool.submit(() -> reconhecedor.testemunha(grafo)));
+
+        Testemunha[] testemunhas = new Testemunha[grafos.size()];
+        for (int i = 0; i < testemunhas.length; i++) testemunhas[i] = tarefas.get(i).join();
+        return testemunhas;
+    }
+
+    static final String[] ORDENS = {"arquivo", "grau", "degenerescencia", "bfs", "rcm"};
+
+    /**
+     * Função que mede o tempo de cada verificação com cada ordem dos vértices.
+     *
+     * <p>
+     *     Para cada ordem o grafo é renumerado e cada verificação roda 5 vezes, o menor tempo é
+     *     impresso em milissegundos. A diferença entre as ordens vem das faltas de cache; para
+     *     ver as faltas em si rode o programa com --ordem sob um contador de hardware, por exemplo
+     *     <i>perf stat -e cache-misses,cache-references java AlgGrafos arquivo --ordem rcm</i>.
+     *     A força bruta só é medida em grafos com até 60 vértices e o <i>MotorBitboard</i> só em grafos
+     *     com até 64. A coluna "paralelo" mede <i>verificaEmParalelo</i> com o reconhecedor
+     *     <i>AUTOMATICO</i> e uma cópia do grafo por thread do pool comum, então compara com o
+     *     tempo de uma única verificação para mostrar o ganho de vazão.
+     * </p>
+     *
+     * @param grafo Grafo lido do arquivo.
+     */
+    static void comparaOrdens(Grafo grafo) {
+        System.out.printf("%-16s %10s %10s %10s %10s %10s %10s %10s %10s%n",
+                "ordem", "renumera", "decomp", "porP4", "censo", "cografo", "bruta", "bitboard", "paralelo");
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        for (String nome : ORDENS) {
+            long antes = System.nanoTime();
+            Grafo renumerado = nome.equals("arquivo") ? grafo : renumera(grafo, ordemDosVertices(grafo, nome));
+            double renumera = (System.nanoTime() - antes) / 1e6;
+
+            List<Grafo> copias = Collections.nCopies(pool.getParallelism(), renumerado);
+            System.out.printf("%-16s %10.2f %10.2f %10.2f %10.2f %10.2f %10s %10s %10.2f%n", nome, renumera,
+                    mede(() -> isP4SparsePorDecomposicao(renumerado)),
+                    mede(() -> isP4SparsePorP4(renumerado)),
+                    mede(() -> censoDeP4(renumerado)),
+                    mede(() -> isCografo(renumerado)),
+                    renumerado.getQtdVertices() <= 60 ? String.format("%.2f", mede(() -> isP4Sparse(renumerado))) : "-",
+                    renumerado.getQtdVertices() <= MotorBitboard.MAXIMO_DE_VERTICES
+                            ? String.format("%.2f", mede(() -> new MotorBitboard(renumerado).testemunha())) : "-",
+                    mede(() -> verificaEmParalelo(copias, AUTOMATICO, pool)));
+        }
+    }
+
+    /**
+     * @return O menor tempo, em milissegundos, de 5 execuções da verificação.
+     */
+    private static double mede(Runnable verificacao) {
+        long melhor = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            long antes = System.nanoTime();
+            verificacao.run();
+            melhor = Math.min(melhor, System.nanoTime() - antes);
+        }
+        return melhor / 1e6;
+    }
+
+    static final String[] FORMATOS = {"texto", "arestas", "dimacs", "metis", "graph6", "sparse6"};
+
+    /**
+     * Função que escolhe o formato do arquivo pela extensão: .edges, .el ou .edgelist para listas
+     * de arestas, .col ou .dimacs para DIMACS, .graph ou .metis para METIS, .g6 para graph6,
+     * .s6 para sparse6 e "texto" ("id = vizinhos") para as demais. Uma extensão de compressão
+     * no final (.gz, .bz2 ou .xz) é desconsiderada.
+     */
+    static String formatoDoArquivo(String arquivo) {
+        String nome = arquivo.toLowerCase();
+        for (String compressao : new String[]{".gz", ".bz2", ".xz"}) {
+            if (nome.endsWith(compressao)) nome = nome.substring(0, nome.length() - compressao.length());
+        }
+        if (nome.endsWith(".edges") || nome.endsWith(".el") || nome.endsWith(".edgelist")) return "arestas";
+        if (nome.endsWith(".col") || nome.endsWith(".dimacs")) return "dimacs";
+        if (nome.endsWith(".graph") || nome.endsWith(".metis")) return "metis";
+        if (nome.endsWith(".g6")) return "graph6";
+        if (nome.endsWith(".s6")) return "sparse6";
+        return "texto";
+    }
+
+    /**
+     * @return Se o formato guarda uma coleção de grafos, um por linha.
+     */
+    static boolean isColecao(String formato) {
+        return formato.equals("graph6") || formato.equals("sparse6");
+    }
+
+    static final int TAMANHO_DO_ANEL = 1 << 22;
+
+    /**
+     * Função para identificar a compressão do arquivo pelos primeiros bytes.
+     *
+     * @return "gzip" (1f 8b), "bzip2" ("BZh"), "xz" (fd "7zXZ" 00) ou null se o arquivo não está comprimido.
+     */
+    static String compressaoDoArquivo(Path arquivo) throws IOException {
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+            ByteBuffer inicio = ByteBuffer.allocate(6);
+            while (inicio.hasRemaining() && canal.read(inicio) >= 0) ;
+            byte[] b = inicio.array();
+            int qtd = inicio.position();
+            if (qtd >= 2 && b[0] == 0x1f && b[1] == (byte) 0x8b) return "gzip";
+            if (qtd >= 3 && b[0] == 'B' && b[1] == 'Z' && b[2] == 'h') return "bzip2";
+            if (qtd >= 6 && b[0] == (byte) 0xfd && b[1] == '7' && b[2] == 'z' && b[3] == 'X' && b[4] == 'Z' && b[5] == 0) return "xz";
+            return null;
+        }
+    }
+
+    /**
+     * Classe que lê um InputStream em outra thread e entrega os bytes por um buffer circular.
+     *
+     * <p>
+     *     A thread produtora (por exemplo, a que descomprime) escreve no anel enquanto há espaço
+     *     e quem lê consome o que já foi escrito, então a descompressão acontece ao mesmo tempo
+     *     que a análise dos bytes. Um erro da produtora é lançado na leitura depois dos bytes
+     *     que ela já entregou. Fechar a entrada antes do fim para a produtora.
+     * </p>
+     */
+    static class EntradaEmOutraThread extends InputStream {
+        private final byte[] anel;
+        private long escritos, lidos; // Totais de bytes, a posição no anel é o total módulo o tamanho
+        private boolean terminou, fechada;
+        private IOException falha;
+
+        public EntradaEmOutraThread(InputStream origem, int tamanho, String nome) {
+            this.anel = new byte[tamanho];
+            Thread produtora = new Thread(() -> produz(origem), nome);
+            produtora.setDaemon(true);
+            produtora.start();
+        }
+
+        private void produz(InputStream origem) {
+            byte[] pedaco = new byte[1 << 16];
+            try (InputStream entrada = origem) {
+                for (int qtd = entrada.read(pedaco); qtd >= 0 && escreve(pedaco, qtd); qtd = entrada.read(pedaco)) ;
+            } catch (IOException e) {
+                synchronized (this) {
+                    falha = e;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                synchronized (this) {
+                    terminou = true;
+                    notifyAll();
+                }
+            }
+        }
+
+        /**
+         * @return false se a entrada foi fechada e a produtora deve parar.
+         */
+        private synchronized boolean escreve(byte[] dados, int qtd) throws InterruptedException {
+            for (int pos = 0; pos < qtd; ) {
+                while (escritos - lidos == anel.length && !fechada) wait();
+                if (fechada) return false;
+                int inicio = (int) (escritos % anel.length);
+                int n = Math.min(qtd - pos, Math.min((int) (anel.length - (escritos - lidos)), anel.length - inicio));
+                System.arraycopy(dados, pos, anel, inicio, n);
+                pos += n;
+                escritos += n;
+                notifyAll();
+            }
+            return true;
+        }
+
+        @Override
+        public synchronized int read(byte[] destino, int deslocamento, int qtd) throws IOException {
+            if (qtd == 0) return 0;
+            try {
+                while (escritos == lidos && !terminou) wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Leitura interrompida");
+            }
+            if (escritos == lidos) {
+                if (falha != null) throw new IOException(falha.getMessage(), falha);
+                return -1;
+            }
+            int inicio = (int) (lidos % anel.length);
+            int n = Math.min(qtd, Math.min((int) (escritos - lidos), anel.length - inicio));
+            System.arraycopy(anel, inicio, destino, deslocamento, n);
+            lidos += n;
+            notifyAll();
+            return n;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] um = new byte[1];
+            return read(um, 0, 1) < 0 ? -1 : um[0] & 0xFF;
+        }
+
+        @Override
+        public synchronized void close() {
+            fechada = true;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Classe para a saída de um programa externo de descompressão (bzip2 -dc ou xz -dc).
+     * Ao fechar, se a saída foi lida até o fim, o código de saída do programa é verificado.
+     */
+    static class EntradaDeProcesso extends FilterInputStream {
+        private final Process processo;
+        private final String comando;
+        private boolean chegouAoFim;
+
+        public EntradaDeProcesso(Process processo, String comando) {
+            super(processo.getInputStream());
+            this.processo = processo;
+            this.comando = comando;
+        }
+
+        @Override
+        public int read(byte[] destino, int deslocamento, int qtd) throws IOException {
+            int n = super.read(destino, deslocamento, qtd);
+            if (n < 0) chegouAoFim = true;
+            return n;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b < 0) chegouAoFim = true;
+            return b;
+        }
+
+        @Override
+        public void close() throws IOException {
+            super.close();
+            if (!chegouAoFim) { // Quem lê parou antes do fim, o programa não precisa terminar
+                processo.destroy();
+                return;
+            }
+            try {
+                int codigo = processo.waitFor();
+                if (codigo != 0) throw new IOException(comando + " terminou com código " + codigo);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Espera por " + comando + " interrompida");
+            }
+        }
+    }
+
+    /**
+     * Função que abre o arquivo para leitura sequencial, descomprimindo-o se preciso.
+     *
+     * <p>
+     *     A compressão é reconhecida pelos primeiros bytes (ver <i>compressaoDoArquivo</i>), não pela
+     *     extensão. gzip é descomprimido pelo próprio Java em uma thread separada, que entrega os
+     *     bytes por um <i>EntradaEmOutraThread</i>. bzip2 e xz não têm suporte no JDK e são
+     *     descomprimidos pelos programas bzip2 e xz, que já rodam em paralelo em outro processo.
+     * </p>
+     */
+    static InputStream abreEntrada(Path arquivo) throws IOException {
+        String compressao = compressaoDoArquivo(arquivo);
+        if (compressao == null) return Files.newInputStream(arquivo);
+        if (compressao.equals("gzip")) {
+            return new EntradaEmOutraThread(new GZIPInputStream(Files.newInputStream(arquivo), 1 << 16), TAMANHO_DO_ANEL,
+                    "descompressao " + arquivo.getFileName());
+        }
+        Process processo = new ProcessBuilder(compressao, "-dc", arquivo.toString())
+                .redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        processo.getOutputStream().close();
+        return new EntradaDeProcesso(processo, compressao);
+    }
+
+    /**
+     * Função para abrir o grafo do arquivo.
+     *
+     * <p>
+     *     Arquivos binários (gravados com --grava-csr), reconhecidos pelo número mágico e não pela
+     *     extensão, são mapeados na memória e usados direto fora do heap pelo <i>GrafoForaDoHeap</i>.
+     *     Os demais são lidos no formato pedido: "texto" por <i>leGrafoMapeado</i> (ou por
+     *     <i>leGrafoDeEntrada</i>, se estiver comprimido) e os outros em streaming por
+     *     <i>LeitorDeLinhas</i>, descomprimidos por <i>abreEntrada</i>. De uma coleção graph6 ou sparse6 só o primeiro grafo
+     *     é lido (ver <i>verificaColecao</i>).
+     *
+     *     Os grafos lidos do texto ficam em vetores do heap, com no máximo <i>MAXIMO_DE_ELEMENTOS</i>
+     *     arcos; passar desse limite termina a leitura com uma mensagem, não com um overflow.
+     * </p>
+     *
+     * @param arquivo Caminho do arquivo.
+     * @param formato Um dos <i>FORMATOS</i>, ou null para escolher pela extensão.
+     * @param weightedGraph Se os pesos das arestas devem ser lidos e guardados no grafo (ver <i>Pesos</i>).
+     * @param correcoes Recebe as correções feitas na leitura (ver <i>normaliza</i>), pode ser null.
+     * @return O grafo lido.
+     */
+    static Grafo abreGrafo(String arquivo, String formato, boolean weightedGraph, Consumer<Normalizacao> correcoes) {
+        Path caminho = Paths.get(arquivo);
+        if (formato == null) formato = formatoDoArquivo(arquivo);
+        Grafo grafo = null;
+        Normalizacao normalizacao = null;
+        try {
+            if (GrafoForaDoHeap.reconhece(caminho)) return GrafoForaDoHeap.mapeia(caminho);
+            if (formato.equals("texto")) {
+                ConstrutorDeGrafo construtor;
+                if (compressaoDoArquivo(caminho) == null) {
+                    construtor = leGrafoMapeado(caminho, weightedGraph);
+                } else {
+                    try (InputStream entrada = abreEntrada(caminho)) {
+                        construtor = leGrafoDeEntrada(entrada, weightedGraph);
+                    }
+                }
+                grafo = construtor.constroi();
+                normalizacao = construtor.getNormalizacao();
+            } else {
+                try (InputStream entrada = abreEntrada(caminho)) {
+                    LeitorDeLinhas leitor = new LeitorDeLinhas(entrada);
+                    if (isColecao(formato)) {
+                        grafo = proximoGrafoDaColecao(leitor);
+                        if (grafo == null) throw leitor.erro("o arquivo não tem nenhum grafo");
+                    } else if (formato.equals("metis")) {
+                        ConstrutorDeGrafo construtor = leMetis(leitor, weightedGraph);
+                        grafo = construtor.constroi();
+                        normalizacao = construtor.getNormalizacao();
+                    } else {
+                        ConstrutorPorArestas construtor = formato.equals("dimacs") ? leDimacs(leitor) : leListaDeArestas(leitor, weightedGraph);
+                        grafo = construtor.constroi();
+                        normalizacao = construtor.getNormalizacao();
+                    }
+                }
+            }
+        } catch (NoSuchFileException e) {
+            System.out.print("Arquivo não encontrado, verifique o caminho do arquivo: " + arquivo);
+            System.exit(0);
+        } catch (IOException e) {
+            System.out.print("Não foi possível abrir o arquivo: " + e.getMessage());
+            System.exit(0);
+        } catch (NumberFormatException e) {
+            System.out.print("Arquivo inválido: " + arquivo + ": " + e.getMessage());
+            System.exit(0);
+        } catch (IllegalStateException | ArithmeticException e) { // Limites de dobraCapacidade e dos offsets int
+            System.out.print("O grafo de " + arquivo + " é grande demais para os vetores do heap: " + e.getMessage()
+                    + " (listas de arestas e arquivos DIMACS podem ser convertidos com --converte-csr)");
+            System.exit(0);
+        }
+        if (correcoes != null && normalizacao != null) correcoes.accept(normalizacao);
+        return grafo;
+    }
+
+    static final int GRAFOS_POR_LOTE = 1 << 12;
+
+    /**
+     * Função que verifica cada grafo de uma coleção graph6 ou sparse6, lida em streaming.
+     *
+     * <p>
+     *     Os grafos são lidos em lotes de <i>GRAFOS_POR_LOTE</i>, cada lote é verificado em paralelo
+     *     por <i>verificaEmParalelo</i> e o resultado de cada grafo é impresso com a sua posição
+     *     na coleção, então coleções de qualquer tamanho usam memória constante.
+     * </p>
+     *
+     * @param arquivo Caminho do arquivo.
+     */
+    static void verificaColecao(String arquivo) {
+        long total = 0, esparsos = 0;
+        try (InputStream entrada = abreEntrada(Paths.get(arquivo))) {
+            LeitorDeLinhas leitor = new LeitorDeLinhas(entrada);
+            List<Grafo> lote = new ArrayList<>(GRAFOS_POR_LOTE);
+            boolean acabou = false;
+            while (!acabou) {
+                Grafo grafo = proximoGrafoDaColecao(leitor);
+                if (grafo != null) lote.add(grafo);
+                acabou = grafo == null;
+                if (lote.size() < GRAFOS_POR_LOTE && !acabou) continue;
+
+                Testemunha[] testemunhas = verificaEmParalelo(lote, AUTOMATICO, ForkJoinPool.commonPool());
+                for (int i = 0; i < lote.size(); i++) {
+                    total++;
+                    if (testemunhas[i] == null) {
+                        esparsos++;
+                        System.out.println(arquivo + ":" + total + ": O grafo é P4-esparso.");
+                    } else {
+                        System.out.println(arquivo + ":" + total + ": O grafo NÃO é P4-esparso. " + testemunhas[i].toString(lote.get(i)));
+                    }
+                }
+                lote.clear();
+            }
+        } catch (NoSuchFileException e) {
+            System.out.print("Arquivo não encontrado, verifique o caminho do arquivo: " + arquivo);
+            System.exit(0);
+        } catch (IOException e) {
+            System.out.print("Não foi possível abrir o arquivo: " + e.getMessage());
+            System.exit(0);
+        } catch (NumberFormatException e) {
+            System.out.print("Arquivo inválido: " + arquivo + ": " + e.getMessage());
+            System.exit(0);
+        }
+        System.out.println(esparsos + " de " + total + " grafo(s) são P4-esparsos.");
+    }
+
+    /**
+     * Função que lê e verifica vários arquivos ao mesmo tempo no ForkJoinPool comum.
+     *
+     * <p>
+     *     Os arquivos são lidos em paralelo, cada grafo é verificado por <i>AUTOMATICO</i> em
+     *     <i>verificaEmParalelo</i> e o resultado de cada arquivo, precedido pelas correções feitas
+     *     na leitura, se houve alguma, é impresso na ordem dos argumentos. As coleções graph6 e
+     *     sparse6 não são lidas junto com os outros arquivos: na sua vez cada uma é verificada
+     *     inteira por <i>verificaColecao</i>.
+     * </p>
+     *
+     * @param arquivos Caminhos dos arquivos.
+     * @param formato Formato de todos os arquivos, ou null para escolher pela extensão de cada um.
+     * @param weightedGraph Se os arquivos de texto possuem o peso depois de cada vizinho.
+     */
+    static void verificaArquivos(List<String> arquivos, String formato, boolean weightedGraph) {
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        List<ForkJoinTask<Grafo>> leituras = new ArrayList<>(arquivos.size());
+        Normalizacao[] normalizacoes = new Normalizacao[arquivos.size()];
+        boolean[] colecao = new boolean[arquivos.size()];
+        for (int i = 0; i < arquivos.size(); i++) {
+            int indice = i;
+            colecao[i] = isColecao(formato != null ? formato : formatoDoArquivo(arquivos.get(i)));
+            leituras.add(colecao[i] ? null : pool.submit(() -> abreGrafo(arquivos.get(indice), formato, weightedGraph,
+                    normalizacao -> normalizacoes[indice] = normalizacao)));
+        }
+
+        List<Grafo> grafos = new ArrayList<>(arquivos.size());
+        for (ForkJoinTask<Grafo> leitura : leituras) grafos.add(leitura == null ? null : leitura.join());
+
+        List<Grafo> lidos = new ArrayList<>(arquivos.size()); // Só os arquivos que não são coleções
+        for (Grafo grafo : grafos) if (grafo != null) lidos.add(grafo);
+        Testemunha[] testemunhasDosLidos = verificaEmParalelo(lidos, AUTOMATICO, pool);
+        for (int i = 0, j = 0; i < arquivos.size(); i++) {
+            if (colecao[i]) {
+                verificaColecao(arquivos.get(i));
+                continue;
+            }
+            Testemunha testemunha = testemunhasDosLidos[j++];
+            if (normalizacoes[i] != null && normalizacoes[i].getCorrecoes() > 0) {
+                System.out.println(arquivos.get(i) + ": Correções feitas na leitura: " + normalizacoes[i] + ".");
+            }
+            if (testemunha == null) {
+                System.out.println(arquivos.get(i) + ": O grafo é P4-esparso.");
+            } else {
+                System.out.println(arquivos.get(i) + ": O grafo NÃO é P4-esparso. " + testemunha.toString(grafos.get(i)));
+            }
+        }
+    }
+
+
+
+
+    static final int MAXIMO_DE_VERTICES_DO_AUTOTESTE = 14; // C(14, 5) = 2002 combinações para a força bruta
+
+    /**
+     * Função que confere o programa em grafos pequenos aleatórios (opção --autoteste).
+     *
+     * <p>
+     *     Metade dos grafos é sorteada com uma densidade aleatória, quase sempre não P4-esparsos, e
+     *     a outra metade é P4-esparsa por construção (ver <i>grafoP4EsparsoAleatorio</i>). Cada grafo
+     *     passa pelas conferências de <i>confereGrafo</i> e cada divergência é impressa com os
+     *     vértices e as arestas do grafo; com a mesma semente o teste sorteia os mesmos grafos.
+     * </p>
+     *
+     * @param quantidade Quantidade de grafos.
+     * @param semente Semente do sorteio.
+     * @return A quantidade de grafos com divergência.
+     */
+    static long autoteste(int quantidade, long semente) {
+        Random sorteio = new Random(semente);
+        long divergencias = 0;
+        for (int i = 0; i < quantidade; i++) {
+            int n = 1 + sorteio.nextInt(MAXIMO_DE_VERTICES_DO_AUTOTESTE);
+            boolean[][] matriz = i % 2 == 0 ? grafoAleatorio(sorteio, n, sorteio.nextDouble()) : grafoP4EsparsoAleatorio(sorteio, n);
+            List<String> erros = new ArrayList<>();
+            confereGrafo(matriz, sorteio, erros);
+            if (!erros.isEmpty()) {
+                divergencias++;
+                System.out.println("Grafo " + i + " (" + descreve(matriz) + "): " + String.join("; ", erros));
+            }
+        }
+        return divergencias;
+    }
+
+    /**
+     * Função com as conferências feitas em cada grafo do autoteste. A resposta de
+     * <i>isP4Sparse</i>, que gera todos os subconjuntos de 5 vértices, é a referência.
+     *
+     * @param matriz Matriz de adjacência do grafo.
+     * @param sorteio Sorteio dos conjuntos conferidos em cada grafo.
+     * @param erros Recebe uma mensagem para cada conferência que falhou.
+     */
+    static void confereGrafo(boolean[][] matriz, Random sorteio, List<String> erros) {
+        GrafoCSR grafo = grafoDaMatriz(matriz);
+        boolean esperado = isP4Sparse(grafo);
+        if (isP4SparsePorDecomposicao(grafo) != esperado) erros.add("isP4SparsePorDecomposicao deu " + !esperado + ", isP4Sparse deu " + esperado);
+        if (isP4SparseParalelo(grafo, ForkJoinPool.commonPool()) != esperado) erros.add("isP4SparseParalelo deu " + !esperado);
+
+        int n = matriz.length;
+        int partes = 1 + sorteio.nextInt(5); // As faixas precisam cobrir as C(n, 5) combinações sem sobrepor
+        long[] limites = faixasBalanceadas(n, partes);
+        boolean faixas = true;
+        for (int p = 0; p < partes; p++) {
+            long tamanho = limites[p + 1] - limites[p];
+            if (tamanho < 0 || Math.abs(tamanho - combinacoes(n, 5) / partes) > 1) erros.add("faixasBalanceadas desbalanceou " + Arrays.toString(limites));
+            faixas &= isP4SparseFaixa(grafo, limites[p], limites[p + 1]);
+        }
+        if (limites[0] != 0 || limites[partes] != combinacoes(n, 5)) erros.add("faixasBalanceadas não cobre tudo " + Arrays.toString(limites));
+        if (faixas != esperado) erros.add("isP4SparseFaixa em " + partes + " faixas deu " + faixas);
+        if (n >= 5) {
+            int[] conjunto = sorteiaConjunto(sorteio, n, 5), desfeito = new int[5];
+            unrankCombinacao(rankCombinacao(conjunto, n), n, desfeito);
+            if (!Arrays.equals(conjunto, desfeito)) erros.add("unrankCombinacao não desfaz rankCombinacao " + Arrays.toString(conjunto));
+        }
+
+        if (isP4SparsePorP4(grafo) != esperado) erros.add("isP4SparsePorP4 deu " + !esperado);
+        long[] visitados = new long[1]; // Cada P4 visitado precisa ser induzido e a contagem bater com a das combinações de 4
+        long[] p4PorVertice = new long[n];
+        new EnumeradorDeP4(grafo).paraCadaP4((a, b, c, d) -> {
+            if (!matriz[a][b] || !matriz[b][c] || !matriz[c][d] || matriz[a][c] || matriz[b][d] || matriz[a][d]) {
+                erros.add("EnumeradorDeP4 visitou " + a + "-" + b + "-" + c + "-" + d + ", que não é um P4 induzido");
+            }
+            visitados[0]++;
+            p4PorVertice[a]++;
+            p4PorVertice[b]++;
+            p4PorVertice[c]++;
+            p4PorVertice[d]++;
+            return true;
+        });
+        if (visitados[0] != qtdP4Induzidos(matriz)) erros.add("EnumeradorDeP4 visitou " + visitados[0] + " P4, o grafo tem " + qtdP4Induzidos(matriz));
+        CensoDeP4 censo = censoDeP4(grafo); // O censo conta sem enumerar e precisa bater com os P4 visitados
+        if (censo.getTotal() != visitados[0] || !Arrays.equals(censo.getPorVertice(), p4PorVertice)) {
+            erros.add("censoDeP4 deu " + censo.getTotal() + " " + Arrays.toString(censo.getPorVertice())
+                    + ", EnumeradorDeP4 deu " + visitados[0] + " " + Arrays.toString(p4PorVertice));
+        }
+
+        Coarvore coarvore = Coarvore.reconhece(grafo); // Cografo é o grafo sem P4 e a coárvore reproduz as arestas
+        boolean cografo = coarvore != null;
+        if (cografo != (visitados[0] == 0) || isCografo(grafo) != cografo) erros.add("isCografo deu " + cografo + " com " + visitados[0] + " P4");
+        for (int u = 0; cografo && u < n; u++) {
+            for (int v = 0; v < n; v++) {
+                if (u != v && coarvore.adjacentes(u, v) != matriz[u][v]) erros.add("Coarvore.adjacentes(" + u + ", " + v + ") errou");
+            }
+        }
+        long erradas = !cografo ? 0 : IntStream.range(0, n * n).parallel() // A mesma coárvore consultada por várias threads
+                .filter(par -> par / n != par % n && coarvore.adjacentes(par / n, par % n) != matriz[par / n][par % n]).count();
+        if (erradas > 0) erros.add("Coarvore.adjacentes errou " + erradas + " pares consultados em paralelo");
+        ReconhecimentoP4Esparso reconhecimento = reconheceP4SparsePorDecomposicao(grafo);
+        if (reconhecimento.isP4Esparso() != esperado || reconhecimento.isCografo() != cografo) {
+            erros.add("reconheceP4SparsePorDecomposicao deu " + reconhecimento.isP4Esparso() + " e cografo " + reconhecimento.isCografo());
+        }
+
+        ReconhecedorP4Esparso[] reconhecedores = {FORCA_BRUTA, DECOMPOSICAO, POR_P4, BITBOARD, AUTOMATICO};
+        String[] nomes = {"FORCA_BRUTA", "DECOMPOSICAO", "POR_P4", "BITBOARD", "AUTOMATICO"};
+        for (int r = 0; r < reconhecedores.length; r++) { // Cada reconhecedor sozinho e em várias tarefas ao mesmo tempo
+            Testemunha[] testemunhas = verificaEmParalelo(Collections.nCopies(4, grafo), reconhecedores[r], ForkJoinPool.commonPool());
+            for (Testemunha t : testemunhas) {
+                if ((t == null) != esperado || t != null && !isTestemunhaValida(matriz, t)) erros.add(nomes[r] + " deu a testemunha " + t);
+            }
+            if (reconhecedores[r].isP4Sparse(grafo) != esperado) erros.add(nomes[r] + ".isP4Sparse deu " + !esperado);
+        }
+
+        boolean[][] comBipartido = new boolean[n + 66][n + 66]; // Acima de 64 vértices AUTOMATICO tira a testemunha da decomposição
+        for (int u = 0; u < n; u++) comBipartido[u] = Arrays.copyOf(matriz[u], n + 66);
+        for (int u = n; u < n + 33; u++) {
+            for (int v = n + 33; v < n + 66; v++) comBipartido[u][v] = comBipartido[v][u] = true;
+        }
+        Testemunha daDecomposicao = AUTOMATICO.testemunha(grafoDaMatriz(comBipartido));
+        if ((daDecomposicao == null) != esperado || daDecomposicao != null && !isTestemunhaValida(comBipartido, daDecomposicao)) {
+            erros.add("AUTOMATICO com um K33,33 disjunto deu a testemunha " + daDecomposicao);
+        }
+
+        Testemunha testemunha = testemunhaP4Sparse(grafo); // A testemunha existe só fora da classe e precisa ser verdadeira
+        if ((testemunha == null) != esperado) erros.add("testemunhaP4Sparse deu " + testemunha);
+        if (testemunha != null && !isTestemunhaValida(matriz, testemunha)) erros.add("Testemunha inválida: " + testemunha);
+        MotorBitboard motor = new MotorBitboard(grafo); // O autoteste fica abaixo de 64 vértices, então o motor vale para todos
+        if (motor.isP4Sparse() != esperado) erros.add("MotorBitboard deu " + !esperado);
+        Testemunha doMotor = motor.testemunha();
+        if ((doMotor == null) != esperado || doMotor != null && !isTestemunhaValida(matriz, doMotor)) {
+            erros.add("MotorBitboard deu a testemunha " + doMotor);
+        }
+        long violacoes = listaViolacoes(grafo, 0, t -> {
+            if (!isTestemunhaValida(matriz, t)) erros.add("listaViolacoes deu testemunha inválida: " + t);
+        });
+        if (violacoes != qtdViolacoes(matriz)) erros.add("listaViolacoes achou " + violacoes + " conjuntos, o grafo tem " + qtdViolacoes(matriz));
+
+        for (int t = 0; t < 20 && matriz.length >= 5; t++) { // A tabela de máscaras contra isP4 em cada combinação de 4
+            int[] conjunto = sorteiaConjunto(sorteio, matriz.length, 5);
+            if (P4_POR_MASCARA[mascaraDoConjunto(matriz, conjunto)] != qtdP4PorCombinacoes(conjunto, grafo)) {
+                erros.add("P4_POR_MASCARA errou " + Arrays.toString(conjunto));
+            }
+        }
+        if (matriz.length <= 10 && isP4SparsePorCombinacoes(grafo) != esperado) { // As máscaras parciais de isP4Sparse
+            erros.add("isP4Sparse deu " + esperado + ", isP4 em cada combinação deu " + !esperado);
+        }
+        long qtdIsP4 = 0; // isP4 sem conjuntos nem boxing precisa achar os mesmos P4 que o enumerador
+        int[] quatro = new int[4];
+        for (int mascara = 0; matriz.length <= 10 && mascara < 1 << n; mascara++) {
+            if (Integer.bitCount(mascara) != 4) continue;
+            for (int v = 0, k = 0; v < n; v++) if ((mascara >>> v & 1) != 0) quatro[k++] = v;
+            if (isP4(quatro, grafo)) qtdIsP4++;
+        }
+        if (matriz.length <= 10 && qtdIsP4 != visitados[0]) erros.add("isP4 achou " + qtdIsP4 + " P4, o grafo tem " + visitados[0]);
+
+        if (!isMesmoGrafo(grafo, matriz)) erros.add("GrafoCSR difere da matriz");
+        GrafoDenso denso = GrafoDenso.de(grafo); // A matriz de bits precisa responder como a CSR
+        if (!isMesmoGrafo(denso, matriz)) erros.add("GrafoDenso difere da matriz");
+        if (isP4SparsePorDecomposicao(denso) != esperado) erros.add("isP4SparsePorDecomposicao no GrafoDenso deu " + !esperado);
+        if (censoDeP4(denso).getTotal() != visitados[0]) erros.add("censoDeP4 no GrafoDenso deu " + censoDeP4(denso).getTotal());
+        for (String nome : ORDENS) { // Cada ordem é uma permutação e a renumeração só troca os nomes dos vértices
+            if (nome.equals("arquivo")) continue;
+            int[] ordem = ordemDosVertices(grafo, nome);
+            boolean[] usado = new boolean[n];
+            boolean permutacao = ordem.length == n;
+            for (int i = 0; permutacao && i < n; i++) {
+                permutacao = ordem[i] >= 0 && ordem[i] < n && !usado[ordem[i]];
+                if (permutacao) usado[ordem[i]] = true;
+            }
+            if (!permutacao) {
+                erros.add("A ordem " + nome + " não é uma permutação: " + Arrays.toString(ordem));
+                continue;
+            }
+            for (int i = 1; nome.equals("grau") && i < n; i++) {
+                if (grafo.grau(ordem[i - 1]) < grafo.grau(ordem[i])) erros.add("A ordem grau não é decrescente: " + Arrays.toString(ordem));
+            }
+            boolean[][] renumerada = new boolean[n][n];
+            for (int i = 0; i < n; i++) for (int j = 0; j < n; j++) renumerada[i][j] = matriz[ordem[i]][ordem[j]];
+            Grafo renumerado = renumera(grafo, ordem);
+            if (!isMesmoGrafo(renumerado, renumerada)) erros.add("renumera com a ordem " + nome + " mudou as arestas");
+            for (int i = 0; i < n; i++) if (renumerado.getId(i) != grafo.getId(ordem[i])) erros.add("renumera trocou o número de " + i);
+            if ((verificaP4Sparse(renumerado) == null) != esperado) erros.add("verificaP4Sparse com a ordem " + nome + " deu " + !esperado);
+        }
+        if (ordemDosVertices(grafo, "nenhuma") != null) erros.add("ordemDosVertices aceitou uma ordem desconhecida");
+        confereNormaliza(matriz, sorteio, erros);
+        conferePesosEmConflito(matriz, sorteio, erros);
+        confereFormatos(matriz, sorteio, erros);
+        conferePesos(matriz, sorteio, erros);
+        confereConstrutorForaDoHeap(matriz, sorteio, erros);
+        confereConversaoParaCsr(matriz, sorteio, erros);
+        GrafoComprimido comprimido = GrafoComprimido.de(grafo); // As listas decodificadas precisam ser as originais
+        if (!isMesmoGrafo(comprimido, matriz)) erros.add("GrafoComprimido difere da matriz");
+        if (isP4SparsePorDecomposicao(comprimido) != esperado) erros.add("isP4SparsePorDecomposicao no GrafoComprimido deu " + !esperado);
+        long[] ids = new long[n]; // Números esparsos de até 64 bits, que a leitura troca por 0..n-1 na mesma ordem
+        MapaDeIds mapa = new MapaDeIds(1);
+        for (int u = 0; u < n; u++) {
+            ids[u] = (u == 0 ? 0 : ids[u - 1] + 1) + (sorteio.nextLong() >>> 24);
+            mapa.put(ids[u], u);
+        }
+        for (int u = 0; u < n; u++) {
+            if (mapa.get(ids[u]) != u || mapa.get(ids[u] + 1) >= 0 || mapa.put(ids[u], n) != u) erros.add("MapaDeIds errou " + ids[u]);
+        }
+        if (mapa.size() != n) erros.add("MapaDeIds guardou " + mapa.size() + " números");
+        byte[] texto = textoDoGrafo(matriz, ids, sorteio);
+        try {
+            ConstrutorDeGrafo emBlocos = analisaEmBlocos(texto, sorteio);
+            if (!isMesmoGrafo(emBlocos.constroi(), matriz)) erros.add("O texto lido em blocos deu outro grafo");
+            if (emBlocos.getNormalizacao().getVizinhosSemLinha() != 1) erros.add("O texto lido em blocos relatou " + emBlocos.getNormalizacao());
+        } catch (NumberFormatException e) {
+            erros.add("O texto lido em blocos foi recusado: " + e.getMessage());
+        }
+        try {
+            analisaEmBlocos((ids[0] + " = " + ids[0] + "x\n").getBytes(StandardCharsets.US_ASCII), sorteio);
+            erros.add("O AnalisadorDeTexto aceitou um caractere inválido");
+        } catch (NumberFormatException e) {
+            // Esperado
+        }
+        ConstrutorDeGrafo construtor = releGrafo(texto, BYTES_POR_TRECHO);
+        if (construtor == null) {
+            erros.add("Não foi possível gravar o arquivo temporário");
+        } else {
+            Grafo lido = construtor.constroi();
+            Normalizacao normalizacao = construtor.getNormalizacao();
+            if (!isMesmoGrafo(lido, matriz)) erros.add("A leitura do arquivo deu outro grafo");
+            if (normalizacao.getCorrecoes() != 1 || normalizacao.getVizinhosSemLinha() != 1) {
+                erros.add("A leitura relatou " + normalizacao + " e não só 1 vizinho sem linha");
+            }
+            for (int u = 0; u < n; u++) if (lido.getId(u) != ids[u]) erros.add("getId(" + u + ") deu " + lido.getId(u) + " e não " + ids[u]);
+            Coarvore coarvoreLida = Coarvore.reconhece(lido); // A coárvore e a decomposição descrevem os vértices pelos números do arquivo
+            if (coarvoreLida != null) {
+                for (int u = 0; u < n; u++) if (coarvoreLida.getId(u) != ids[u]) erros.add("Coarvore.getId(" + u + ") deu " + coarvoreLida.getId(u));
+                String[] folhas = coarvoreLida.toString().replaceAll("[01]\\(|\\)", " ").trim().split(" +");
+                long[] idsDasFolhas = new long[n == 0 ? 0 : folhas.length];
+                for (int i = 0; i < idsDasFolhas.length; i++) idsDasFolhas[i] = Long.parseLong(folhas[i]);
+                Arrays.sort(idsDasFolhas);
+                if (!Arrays.equals(idsDasFolhas, ids)) erros.add("Coarvore.toString deu " + coarvoreLida);
+            }
+            DecomposicaoP4Esparsa decomposicao = new DecomposicaoP4Esparsa(lido);
+            if (n >= 5 && !cografo && !decomposicao.verifica()) {
+                long[] idsSemAranha = decomposicao.getIdsSemAranha();
+                for (long id : idsOriginais(lido, decomposicao.testemunha().getConjunto())) {
+                    if (Arrays.binarySearch(idsSemAranha, id) < 0) erros.add("A testemunha tem " + id + ", fora de " + Arrays.toString(idsSemAranha));
+                }
+            }
+            GrafoComprimido lidoComprimido = GrafoComprimido.de(lido);
+            for (int u = 0; u < n; u++) if (lidoComprimido.getId(u) != ids[u]) erros.add("GrafoComprimido trocou o número de " + u);
+
+            GrafoForaDoHeap direto = GrafoForaDoHeap.de(lido), mapeado = regravaCsr(lido, erros); // Fora do heap, com os mesmos números
+            if (mapeado == null) erros.add("Não foi possível gravar o arquivo .csr temporário");
+            for (GrafoForaDoHeap foraDoHeap : mapeado == null ? new GrafoForaDoHeap[]{direto} : new GrafoForaDoHeap[]{direto, mapeado}) {
+                String nome = foraDoHeap == direto ? "GrafoForaDoHeap.de" : "GrafoForaDoHeap.mapeia";
+                if (!isMesmoGrafo(foraDoHeap, matriz)) erros.add(nome + " difere da matriz");
+                for (int u = 0; u < n; u++) if (foraDoHeap.getId(u) != ids[u]) erros.add(nome + " trocou o número de " + u);
+                if (isP4SparsePorDecomposicao(foraDoHeap) != esperado) erros.add("isP4SparsePorDecomposicao em " + nome + " deu " + !esperado);
+            }
+        }
+
+        GrafoForaDoHeap semIds = regravaCsr(grafo, erros); // Números 0..n-1, gravados sem ids
+        if (semIds != null && !isMesmoGrafo(semIds, matriz)) erros.add("O arquivo binário sem ids difere da matriz");
+
+        try { // Trechos de poucos bytes, para que até arquivos pequenos sejam lidos em paralelo
+            ConstrutorDeGrafo emTrechos = releGrafo(texto, 1 + sorteio.nextInt(16));
+            if (emTrechos != null) {
+                if (!isMesmoGrafo(emTrechos.constroi(), matriz)) erros.add("A leitura em trechos deu outro grafo");
+                Normalizacao normalizacao = emTrechos.getNormalizacao();
+                if (normalizacao.getCorrecoes() != 1 || normalizacao.getVizinhosSemLinha() != 1) {
+                    erros.add("A leitura em trechos relatou " + normalizacao + " e não só 1 vizinho sem linha");
+                }
+            }
+        } catch (NumberFormatException e) {
+            erros.add("A leitura em trechos foi recusada: " + e.getMessage());
+        }
+        byte[] invalido = texto.clone();
+        invalido[sorteio.nextInt(invalido.length)] = 'x';
+        try {
+            releGrafo(invalido, 1 + sorteio.nextInt(16));
+            erros.add("A leitura em trechos aceitou um caractere inválido");
+        } catch (NumberFormatException e) {
+            String mensagem = e.getMessage();
+            if (mensagem == null || !mensagem.contains("'x'")) erros.add("O erro de um trecho perdeu a mensagem: " + mensagem);
+        }
+        confereCompressao(texto, matriz, sorteio, erros);
+    }
+
+    /**
+     * Função que confere a leitura de entradas comprimidas.
+     *
+     * <p>
+     *     O <i>EntradaEmOutraThread</i>, com um anel bem menor que o texto, precisa entregar os
+     *     mesmos bytes e, se a origem falha, lançar o erro dela só depois dos bytes já produzidos.
+     *     O texto comprimido com gzip, gravado sem a extensão .gz, precisa ser reconhecido pelos
+     *     primeiros bytes e lido por <i>abreEntrada</i> e <i>leGrafoDeEntrada</i> como o grafo da matriz.
+     * </p>
+     */
+    private static void confereCompressao(byte[] texto, boolean[][] matriz, Random sorteio, List<String> erros) {
+        try (InputStream entrada = new EntradaEmOutraThread(new ByteArrayInputStream(texto), 1 + sorteio.nextInt(64), "autoteste")) {
+            if (!Arrays.equals(leTudo(entrada, sorteio), texto)) erros.add("EntradaEmOutraThread trocou os bytes");
+        } catch (IOException e) {
+            erros.add("EntradaEmOutraThread falhou: " + e.getMessage());
+        }
+        InputStream comFalha = new InputStream() { // Entrega o texto e depois falha
+            private int posicao;
+
+            @Override
+            public int read() throws IOException {
+                if (posicao == texto.length) throw new IOException("falha sorteada");
+                return texto[posicao++] & 0xFF;
+            }
+        };
+        ByteArrayOutputStream entregues = new ByteArrayOutputStream();
+        try (InputStream entrada = new EntradaEmOutraThread(comFalha, 1 + sorteio.nextInt(64), "autoteste")) {
+            for (int b = entrada.read(); b >= 0; b = entrada.read()) entregues.write(b);
+            erros.add("EntradaEmOutraThread escondeu a falha da origem");
+        } catch (IOException e) {
+            if (!"falha sorteada".equals(e.getMessage())) erros.add("EntradaEmOutraThread trocou a falha da origem: " + e.getMessage());
+            if (!Arrays.equals(entregues.toByteArray(), texto)) erros.add("EntradaEmOutraThread perdeu bytes antes da falha");
+        }
+
+        File arquivo = null;
+        try {
+            arquivo = File.createTempFile("autoteste", ".txt");
+            try (GZIPOutputStream saida = new GZIPOutputStream(Files.newOutputStream(arquivo.toPath()))) {
+                saida.write(texto);
+            }
+            if (!"gzip".equals(compressaoDoArquivo(arquivo.toPath()))) erros.add("compressaoDoArquivo não reconheceu o gzip");
+            try (InputStream entrada = abreEntrada(arquivo.toPath())) {
+                if (!isMesmoGrafo(leGrafoDeEntrada(entrada, false).constroi(), matriz)) erros.add("O texto com gzip deu outro grafo");
+            }
+        } catch (IOException | NumberFormatException e) {
+            erros.add("O texto com gzip foi recusado: " + e.getMessage());
+        } finally {
+            if (arquivo != null) arquivo.delete();
+        }
+        if (!formatoDoArquivo("grafo.edges.gz").equals("arestas") || !formatoDoArquivo("grafos.g6.xz").equals("graph6")) {
+            erros.add("formatoDoArquivo não ignorou a extensão da compressão");
+        }
+    }
+
+    private static byte[] leTudo(InputStream entrada, Random sorteio) throws IOException {
+        ByteArrayOutputStream saida = new ByteArrayOutputStream();
+        byte[] pedaco = new byte[16];
+        for (int qtd = entrada.read(pedaco, 0, 1 + sorteio.nextInt(16)); qtd >= 0; qtd = entrada.read(pedaco, 0, 1 + sorteio.nextInt(16))) {
+            saida.write(pedaco, 0, qtd);
+        }
+        return saida.toByteArray();
+    }
+
+    /**
+     * Função que confere se o grafo possui os vértices e as arestas da matriz: graus, adjacências,
+     * vizinhos em comum e o iterador, que deve dar os vizinhos em ordem crescente.
+     */
+    private static boolean isMesmoGrafo(Grafo grafo, boolean[][] matriz) {
+        int n = matriz.length;
+        if (grafo.getQtdVertices() != n) return false;
+        IteradorDeVizinhos vizinhos = grafo.iterador();
+        for (int u = 0; u < n; u++) {
+            int grau = 0;
+            for (int v = 0; v < n; v++) {
+                if (matriz[u][v]) grau++;
+                if (grafo.adjacentes(u, v) != matriz[u][v]) return false;
+                int comuns = 0;
+                for (int w = 0; w < n; w++) if (matriz[u][w] && matriz[v][w]) comuns++;
+                if (u != v && grafo.vizinhosEmComum(u, v) != comuns) return false;
+            }
+            if (grafo.grau(u) != grau) return false;
+            vizinhos.comeca(u);
+            int anterior = -1;
+            for (int w = vizinhos.proximo(); w >= 0; w = vizinhos.proximo()) {
+                if (w <= anterior || !matriz[u][w]) return false;
+                anterior = w;
+                grau--;
+            }
+            if (grau != 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Função que escreve o grafo no formato do arquivo, com o número <i>ids[u]</i> para o vértice u.
+     * As linhas e os vizinhos saem embaralhados, um vértice ganha antes uma linha que a definitiva
+     * substitui e outro ganha um vizinho sem linha, que a leitura ignora. Os separadores variam entre
+     * espaços e tabulações, as linhas terminam em '\n' ou "\r\n" e há linhas em branco no meio.
      */
-    static class Leitor {
-        private String path;
-        private BufferedReader bufferedReader;
+    private static byte[] textoDoGrafo(boolean[][] matriz, long[] ids, Random sorteio) {
+        int n = matriz.length;
+        List<String> linhas = new ArrayList<>();
+        for (int u = 0; u < n; u++) {
+            List<Long> vizinhos = new ArrayList<>();
+            for (int v = 0; v < n; v++) if (matriz[u][v]) vizinhos.add(ids[v]);
+            if (u == n - 1) vizinhos.add(ids[n - 1] + 1);
+            Collections.shuffle(vizinhos, sorteio);
+            StringBuilder linha = new StringBuilder().append(ids[u]).append(separador(sorteio)).append('=');
+            for (long v : vizinhos) linha.append(separador(sorteio)).append(v);
+            linhas.add(linha.toString());
+        }
+        Collections.shuffle(linhas, sorteio);
+        linhas.add(0, ids[sorteio.nextInt(n)] + " = " + ids[sorteio.nextInt(n)]);
 
-        public Leitor(String path) throws FileNotFoundException {
-            this.path = path;
-            initBufferedReader();
+        StringBuilder texto = new StringBuilder();
+        for (String linha : linhas) {
+            if (sorteio.nextInt(4) == 0) texto.append(sorteio.nextBoolean() ? "\n" : " \t\r\n");
+            texto.append(linha).append(sorteio.nextBoolean() ? "\n" : "\r\n");
         }
+        if (sorteio.nextBoolean()) texto.setLength(texto.length() - 1); // Última linha sem '\n'
+        return texto.toString().getBytes(StandardCharsets.US_ASCII);
+    }
 
-        private void initBufferedReader() throws FileNotFoundException {
-            bufferedReader = new BufferedReader(new FileReader(this.path));
+    private static String separador(Random sorteio) {
+        return sorteio.nextBoolean() ? " " : sorteio.nextBoolean() ? "\t" : " \t ";
+    }
+
+    /**
+     * Função que grava o texto do grafo em um arquivo temporário e o lê de volta com <i>leGrafoMapeado</i>,
+     * em trechos de pelo menos <i>bytesPorTrecho</i> bytes.
+     *
+     * @return O construtor com as linhas lidas, ou null se o arquivo temporário não pôde ser gravado.
+     */
+    private static ConstrutorDeGrafo releGrafo(byte[] texto, long bytesPorTrecho) {
+        File arquivo = null;
+        try {
+            arquivo = File.createTempFile("autoteste", ".txt");
+            Files.write(arquivo.toPath(), texto);
+            return leGrafoMapeado(arquivo.toPath(), false, bytesPorTrecho);
+        } catch (IOException e) {
+            return null;
+        } finally {
+            if (arquivo != null) arquivo.delete();
         }
+    }
 
-        public String getLine() {
-            String result = "";
-            try {
-                result = bufferedReader.readLine();
-            } catch (IOException e) {
-                e.printStackTrace();
+    /**
+     * Função que passa o texto ao <i>AnalisadorDeTexto</i> em blocos de tamanho sorteado, para
+     * que tokens e linhas fiquem partidos entre um bloco e o seguinte.
+     */
+    private static ConstrutorDeGrafo analisaEmBlocos(byte[] texto, Random sorteio) {
+        ConstrutorDeGrafo construtor = new ConstrutorDeGrafo();
+        AnalisadorDeTexto analisador = new AnalisadorDeTexto(construtor, false, 0);
+        ByteBuffer bloco = ByteBuffer.wrap(texto);
+        for (int inicio = 0; inicio < texto.length; ) {
+            int fim = Math.min(texto.length, inicio + 1 + sorteio.nextInt(8));
+            bloco.limit(fim).position(inicio);
+            analisador.consome(bloco);
+            inicio = fim;
+        }
+        analisador.termina();
+        return construtor;
+    }
+
+    /**
+     * Função que confere <i>normaliza</i> com listas bagunçadas: cada aresta aparece nos dois
+     * sentidos ou em um só, alguns arcos são repetidos, alguns vértices ganham laços e cada lista
+     * é embaralhada. O resultado precisa ser o grafo da matriz e as contagens, as das bagunças.
+     */
+    private static void confereNormaliza(boolean[][] matriz, Random sorteio, List<String> erros) {
+        int n = matriz.length;
+        List<List<Integer>> listas = new ArrayList<>();
+        for (int u = 0; u < n; u++) listas.add(new ArrayList<>());
+        long lacos = 0, repetidos = 0, deVolta = 0;
+        for (int u = 0; u < n; u++) {
+            for (int v = u + 1; v < n; v++) {
+                if (!matriz[u][v]) continue;
+                int sentidos = sorteio.nextInt(3); // 0: os dois, 1: só u -> v, 2: só v -> u
+                if (sentidos != 2) listas.get(u).add(v);
+                if (sentidos != 1) listas.get(v).add(u);
+                if (sentidos != 0) deVolta++;
+            }
+        }
+        for (int u = 0; u < n; u++) {
+            List<Integer> lista = listas.get(u);
+            for (int i = 0, tamanho = lista.size(); i < tamanho; i++) {
+                if (sorteio.nextInt(4) == 0) {
+                    lista.add(lista.get(i));
+                    repetidos++;
+                }
+            }
+            if (sorteio.nextInt(3) == 0) {
+                lista.add(u);
+                lacos++;
+            }
+            Collections.shuffle(lista, sorteio);
+        }
+
+        int[] offsets = new int[n + 1];
+        for (int u = 0; u < n; u++) offsets[u + 1] = offsets[u] + listas.get(u).size();
+        int[] targets = new int[offsets[n]];
+        for (int u = 0; u < n; u++) {
+            for (int i = 0; i < listas.get(u).size(); i++) targets[offsets[u] + i] = listas.get(u).get(i);
+        }
+        Normalizacao normalizada = normaliza(offsets, targets, 0);
+        if (!isMesmoGrafo(new GrafoCSR(normalizada.getOffsets(), normalizada.getTargets()), matriz)) erros.add("normaliza mudou o grafo");
+        if (normalizada.getLacos() != lacos || normalizada.getRepetidos() != repetidos || normalizada.getArestasDeVolta() != deVolta) {
+            erros.add("normaliza relatou " + normalizada + ", eram " + lacos + " laço(s), " + repetidos
+                    + " repetido(s) e " + deVolta + " aresta(s) de volta");
+        }
+    }
+
+    /**
+     * Função que confere os pesos que <i>normaliza</i> descarta. Cada aresta aparece nos dois
+     * sentidos ou em um só e alguns arcos são repetidos logo em seguida; o sentido contrário e as
+     * repetições às vezes têm outro peso. Cada aresta precisa ficar com o peso do arco que sai do
+     * menor vértice, nos dois sentidos, e cada peso diferente precisa ser contado. Na lista de
+     * arestas uma aresta repetida ao contrário com outro peso conta uma vez e fica com o primeiro
+     * peso. -0.0 não pode virar o int 0 em <i>Pesos.compacta</i>.
+     */
+    private static void conferePesosEmConflito(boolean[][] matriz, Random sorteio, List<String> erros) {
+        int n = matriz.length;
+        int[] offsets = new int[n + 1];
+        int[] targets = new int[4 * n * n + 1];
+        double[] pesos = new double[targets.length];
+        long conflitos = 0;
+        int pos = 0;
+        for (int u = 0; u < n; u++) {
+            for (int v = 0; v < n; v++) {
+                if (!matriz[u][v] || u > v && sorteio.nextInt(3) == 0) continue; // Às vezes só o arco de ida
+                boolean outroPeso = sorteio.nextInt(3) == 0;
+                targets[pos] = v;
+                pesos[pos++] = Math.min(u, v) + (u > v && outroPeso ? 0.5 : 0);
+                if (u > v && outroPeso) conflitos++;
+                if (sorteio.nextInt(4) == 0) { // Repetição, às vezes com outro peso
+                    targets[pos] = v;
+                    pesos[pos] = pesos[pos - 1] + (sorteio.nextBoolean() ? 0.25 : 0);
+                    if (pesos[pos] != pesos[pos - 1]) conflitos++;
+                    pos++;
+                }
+            }
+            offsets[u + 1] = pos;
+        }
+        Normalizacao normalizada = normaliza(offsets, targets, pesos, 0);
+        GrafoCSR grafo = new GrafoCSR(normalizada.getOffsets(), normalizada.getTargets(), null, Pesos.compacta(normalizada.getPesos()));
+        if (!isMesmoGrafo(grafo, matriz)) erros.add("normaliza com pesos mudou o grafo");
+        for (int u = 0; u < n; u++) {
+            for (int v = 0; v < n; v++) {
+                if (matriz[u][v] && grafo.peso(u, v) != Math.min(u, v)) erros.add("normaliza deixou o peso " + grafo.peso(u, v) + " em " + u + "-" + v);
             }
-            return result;
+        }
+        if (normalizada.getPesosEmConflito() != conflitos) {
+            erros.add("normaliza relatou " + normalizada.getPesosEmConflito() + " peso(s) em conflito, eram " + conflitos);
         }
 
+        try {
+            ConstrutorPorArestas porArestas = leListaDeArestas(leitorDe("0 1 2.5\n1 0 3\n0 1 2.5\n"), true);
+            Grafo lido = porArestas.constroi();
+            Normalizacao normalizacao = porArestas.getNormalizacao();
+            if (lido.peso(0, 1) != 2.5 || lido.peso(1, 0) != 2.5 || normalizacao.getPesosEmConflito() != 1 || normalizacao.getRepetidos() != 1) {
+                erros.add("A lista de arestas com pesos em conflito deu " + lido.peso(0, 1) + " e relatou " + normalizacao);
+            }
+        } catch (IOException | NumberFormatException e) {
+            erros.add("A lista de arestas com pesos em conflito foi recusada: " + e.getMessage());
+        }
+        Pesos comZeroNegativo = Pesos.compacta(new double[]{1, -0.0});
+        if (comZeroNegativo.getTipo() != Pesos.FLOAT || Double.compare(comZeroNegativo.get(1), -0.0) != 0) {
+            erros.add("Pesos.compacta guardou -0.0 como " + Pesos.nomeDoTipo(comZeroNegativo.getTipo()) + " " + comZeroNegativo.get(1));
+        }
     }
 
     /**
-     * Classe para representar um vértice.
+     * Função que escreve o grafo como lista de arestas, DIMACS, METIS, graph6 e sparse6 e o lê de
+     * volta com os leitores de cada formato, que precisam dar o grafo da matriz.
+     *
      * <p>
-     *     A classe possui como atributos o número do vértice e os vizinhos desse vértice.
+     *     A lista de arestas tem comentários, separadores variados, colunas extras, algumas arestas
+     *     nos dois sentidos e uma aresta repetida no mesmo sentido, a única correção esperada. O
+     *     arquivo METIS usa um fmt sorteado, com tamanhos e pesos que a leitura pula. Vértices fora
+     *     de 1..n em DIMACS e METIS precisam ser recusados.
      * </p>
      */
-    static class Node {
-        private final Integer nodeId;
-        private List<Integer> neighbors;
-
-        public Node(Integer nodeId) {
-            this.nodeId = nodeId;
-            neighbors = new ArrayList<>();
+    private static void confereFormatos(boolean[][] matriz, Random sorteio, List<String> erros) {
+        int n = matriz.length;
+        String[] separadores = {" ", "\t", ",", " , "};
+        StringBuilder arestas = new StringBuilder("# u v\n");
+        StringBuilder dimacs = new StringBuilder("c autoteste\n");
+        String repetida = null;
+        int m = 0;
+        for (int v = 0; v < n; v++) {
+            boolean isolado = true;
+            for (int u = 0; u < n; u++) isolado &= !matriz[u][v];
+            if (isolado || sorteio.nextInt(8) == 0) arestas.append(10L * v + 7).append('\n'); // Um número só: vértice isolado
+            for (int u = 0; u < v; u++) {
+                if (!matriz[u][v]) continue;
+                m++;
+                boolean inverte = sorteio.nextBoolean();
+                String linha = (10L * (inverte ? v : u) + 7) + separadores[sorteio.nextInt(4)] + (10L * (inverte ? u : v) + 7);
+                arestas.append(linha).append(sorteio.nextInt(4) == 0 ? " 2.5\n" : "\n");
+                if (sorteio.nextInt(4) == 0) arestas.append(10L * (inverte ? u : v) + 7).append(' ').append(10L * (inverte ? v : u) + 7).append('\n');
+                if (sorteio.nextInt(6) == 0) arestas.append(sorteio.nextBoolean() ? "% comentário\n" : "\n");
+                if (repetida == null) repetida = linha;
+                dimacs.append("e ").append(u + 1).append(' ').append(v + 1).append('\n');
+            }
         }
+        if (repetida != null) arestas.append(repetida).append("\r\n");
+        dimacs.insert(dimacs.indexOf("\n") + 1, "p edge " + n + " " + m + "\n");
 
-        public void addNeighbor(Integer node) {
-            neighbors.add(node);
+        int fmt = new int[]{0, 1, 10, 11, 100, 101, 110, 111}[sorteio.nextInt(8)];
+        StringBuilder metis = new StringBuilder("% autoteste\n").append(n).append(' ').append(m);
+        if (fmt != 0 || sorteio.nextBoolean()) metis.append(' ').append(fmt);
+        metis.append('\n');
+        for (int u = 0; u < n; u++) {
+            if (fmt / 100 == 1) metis.append("3 ");
+            if (fmt / 10 % 10 == 1) metis.append("4 ");
+            for (int v = 0; v < n; v++) {
+                if (!matriz[u][v]) continue;
+                metis.append(v + 1).append(' ');
+                if (fmt % 10 == 1) metis.append("5 ");
+            }
+            metis.append('\n');
         }
 
-        public Integer getNodeId() {
-            return nodeId;
+        try {
+            ConstrutorPorArestas porArestas = leListaDeArestas(leitorDe(arestas), false);
+            if (!isMesmoGrafo(porArestas.constroi(), matriz)) erros.add("leListaDeArestas deu outro grafo");
+            Normalizacao normalizacao = porArestas.getNormalizacao();
+            if (normalizacao.getRepetidos() != (repetida == null ? 0 : 1) || normalizacao.getLacos() != 0) {
+                erros.add("leListaDeArestas relatou " + normalizacao + " e não só a aresta repetida");
+            }
+            if (!isMesmoGrafo(leDimacs(leitorDe(dimacs)).constroi(), matriz)) erros.add("leDimacs deu outro grafo");
+            if (!isMesmoGrafo(leMetis(leitorDe(metis), false).constroi(), matriz)) erros.add("leMetis com fmt " + fmt + " deu outro grafo");
+
+            String graph6 = codificaGraph6(matriz), sparse6 = codificaSparse6(matriz);
+            LeitorDeLinhas colecao = leitorDe(new StringBuilder(">>graph6<<").append(graph6).append("\n\n:").append(sparse6).append("\r\n"));
+            Grafo primeiro = proximoGrafoDaColecao(colecao), segundo = proximoGrafoDaColecao(colecao);
+            if (primeiro == null || !isMesmoGrafo(primeiro, matriz)) erros.add("graph6 " + graph6 + " deu outro grafo");
+            if (segundo == null || !isMesmoGrafo(segundo, matriz)) erros.add("sparse6 :" + sparse6 + " deu outro grafo");
+            if (proximoGrafoDaColecao(colecao) != null) erros.add("A coleção deu mais de dois grafos");
+        } catch (IOException | NumberFormatException e) {
+            erros.add("Um dos formatos foi recusado: " + e.getMessage());
         }
 
-        public List<Integer> getNeighbors() {
-            return neighbors;
+        StringBuilder metisFora = new StringBuilder().append(n).append(" 1\n").append(n + 1); // Linhas vazias para os demais
+        for (int u = 0; u < n; u++) metisFora.append('\n');
+        String[] foraDoIntervalo = {"p edge " + n + " 1\ne 1 " + (n + 1) + "\n", metisFora.toString()};
+        for (int f = 0; f < foraDoIntervalo.length; f++) {
+            try {
+                LeitorDeLinhas leitor = leitorDe(new StringBuilder(foraDoIntervalo[f]));
+                if (f == 0) leDimacs(leitor);
+                else leMetis(leitor, false);
+                erros.add((f == 0 ? "leDimacs" : "leMetis") + " aceitou o vértice " + (n + 1));
+            } catch (IOException | NumberFormatException e) {
+                // Esperado
+            }
         }
     }
 
     /**
-     * Função para converter a linha do arquivo em um vértice.
+     * Função que confere os pesos das arestas.
      *
-     * @param line linha do arquivo txt contendo as informações de um vértice.
-     * @return Um objeto da classe Node contendo o  número do vértice e seus vizinhos.
+     * <p>
+     *     Cada aresta recebe um peso sorteado, inteiro, múltiplo de 1/2 ou qualquer, escrito de
+     *     formas variadas (como "3", "3.0", "-0.5" ou "1.0E-4"). O grafo é lido com pesos do formato
+     *     "id = vizinhos", da lista de arestas e do METIS, e cada leitura precisa guardar os pesos no
+     *     menor tipo exato e devolvê-los em <i>peso(u, v)</i> e no iterador. Os pesos precisam
+     *     sobreviver a <i>renumera</i> e ao formato binário. <i>converteDecimal</i> precisa dar o
+     *     mesmo double que Double.parseDouble.
+     * </p>
      */
-    static Node convertStringToNode(String line) {
-
-        String[] lineInfos =  line.split("="); //Divido a linha em [Número do vértice, Vizinhos do vértice]
-
-        String id = lineInfos[0].trim(); // Retiro os espaços do Número do Vértice
+    private static void conferePesos(boolean[][] matriz, Random sorteio, List<String> erros) {
+        for (int i = 0; i < 20; i++) {
+            StringBuilder numero = new StringBuilder(new String[]{"", "-", "+"}[sorteio.nextInt(3)]);
+            int inteiros = sorteio.nextInt(19), decimais = sorteio.nextInt(25);
+            if (inteiros + decimais == 0) inteiros = 1;
+            for (int d = 0; d < inteiros; d++) numero.append((char) ('0' + sorteio.nextInt(10)));
+            if (decimais > 0 || sorteio.nextInt(4) == 0) numero.append('.');
+            for (int d = 0; d < decimais; d++) numero.append((char) ('0' + sorteio.nextInt(10)));
+            if (sorteio.nextInt(8) == 0) numero.append("e-").append(sorteio.nextInt(30));
+            byte[] bytes = numero.toString().getBytes(StandardCharsets.US_ASCII);
+            double convertido = converteDecimal(bytes, 0, bytes.length), esperado = Double.parseDouble(numero.toString());
+            if (Double.compare(convertido, esperado) != 0) erros.add("converteDecimal(" + numero + ") deu " + convertido + " e não " + esperado);
+        }
 
-        int nodeId = Integer.parseInt(id);
-        Node node = new Node(nodeId); // Inicializo o Node com o Número do vértice
+        int n = matriz.length;
+        int familia = sorteio.nextInt(3); // 0: inteiros, 1: múltiplos de 1/2, 2: quaisquer
+        double[][] pesos = new double[n][n];
+        for (int u = 0; u < n; u++) {
+            for (int v = u + 1; v < n; v++) {
+                int k = sorteio.nextInt(2001) - 1000;
+                pesos[u][v] = pesos[v][u] = familia == 0 ? k : familia == 1 ? k / 2.0 : k * sorteio.nextDouble();
+            }
+        }
+        boolean inteiros = true, floats = true;
+        int m = 0;
+        for (int u = 0; u < n; u++) {
+            for (int v = 0; v < n; v++) {
+                if (!matriz[u][v]) continue;
+                if (u < v) m++;
+                inteiros &= pesos[u][v] == Math.rint(pesos[u][v]);
+                floats &= (double) (float) pesos[u][v] == pesos[u][v];
+            }
+        }
+        int tipo = inteiros ? Pesos.INT : floats ? Pesos.FLOAT : Pesos.DOUBLE;
 
-        String[] strNeighbors = new String[0];
+        StringBuilder texto = new StringBuilder(), arestas = new StringBuilder();
+        StringBuilder metis = new StringBuilder().append(n).append(' ').append(m).append(" 1\n");
+        for (int u = 0; u < n; u++) {
+            texto.append(u).append(" =");
+            for (int v = 0; v < n; v++) {
+                if (!matriz[u][v]) continue;
+                String peso = escrevePeso(pesos[u][v], sorteio);
+                texto.append(' ').append(v).append(' ').append(peso);
+                metis.append(v + 1).append(' ').append(peso).append(' ');
+                if (u < v) arestas.append(u).append('\t').append(v).append('\t').append(peso).append('\n');
+            }
+            if (texto.charAt(texto.length() - 1) == '=' || sorteio.nextInt(4) == 0) arestas.append(u).append('\n'); // Vértice isolado
+            texto.append('\n');
+            metis.append('\n');
+        }
 
-        if (lineInfos.length > 1) strNeighbors = lineInfos[1].split(" "); // Separo cada vizinho em um índice do vetor de String
+        try {
+            ConstrutorDeGrafo construtor = new ConstrutorDeGrafo(true);
+            AnalisadorDeTexto analisador = new AnalisadorDeTexto(construtor, true, 0);
+            analisador.consome(ByteBuffer.wrap(texto.toString().getBytes(StandardCharsets.US_ASCII)));
+            analisador.termina();
+            Grafo lido = construtor.constroi();
+            Grafo[] grafos = {lido, leListaDeArestas(leitorDe(arestas), true).constroi(), leMetis(leitorDe(metis), true).constroi(),
+                    GrafoForaDoHeap.de(lido), regravaCsr(lido, erros)};
+            String[] nomes = {"O texto", "A lista de arestas", "O METIS", "GrafoForaDoHeap.de", "GrafoForaDoHeap.mapeia"};
+            for (int g = 0; g < grafos.length; g++) {
+                if (grafos[g] != null && !isMesmosPesos(grafos[g], matriz, pesos, tipo)) erros.add(nomes[g] + " com pesos " + tipo + " deu outros pesos");
+            }
 
-        int cntNumbers = 0;
-        for (String number : strNeighbors) { // Para cada String no vetor de vizinhos
-            if (number.equals("")) continue;
-            cntNumbers++;
-            if (weightedGraph && cntNumbers % 2 == 0) continue; // Se o grafo tiver pesos ignoro os pesos
-            node.addNeighbor(Integer.parseInt(number.trim())); // Adiciono o vizinho ao node
+            int[] ordem = ordemDosVertices(lido, "grau"), posicao = new int[n];
+            for (int i = 0; i < n; i++) posicao[ordem[i]] = i;
+            Grafo renumerado = renumera(lido, ordem);
+            for (int u = 0; u < n; u++) {
+                for (int v = 0; v < n; v++) {
+                    if (matriz[u][v] && renumerado.peso(posicao[u], posicao[v]) != pesos[u][v]) erros.add("renumera trocou o peso de " + u + "-" + v);
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            erros.add("Os pesos foram recusados: " + e.getMessage());
         }
-
-        return node;
     }
 
+    /**
+     * Função que monta o grafo com <i>ConstrutorForaDoHeap</i>, com as arestas em ordem sorteada,
+     * algumas nos dois sentidos ou repetidas, laços e, às vezes, pesos. As duas passadas recebem as
+     * mesmas arestas e o arquivo mapeado precisa ter o grafo da matriz, os números a partir de
+     * primeiroId e os pesos no menor tipo exato; o peso -0.0 da aresta 0-2 não pode virar int.
+     */
+    private static void confereConstrutorForaDoHeap(boolean[][] matriz, Random sorteio, List<String> erros) {
+        int n = matriz.length;
+        long primeiroId = sorteio.nextBoolean() ? 0 : sorteio.nextInt(1000) - 500;
+        boolean comPesos = sorteio.nextBoolean();
+        double divisor = sorteio.nextBoolean() ? -1.0 : -2.0; // O peso de u-v é (u + v - 2) / divisor e o da aresta 0-2 é -0.0
+        List<int[]> arestas = new ArrayList<>();
+        boolean inteiros = true;
+        for (int u = 0; u < n; u++) {
+            for (int v = u + 1; v < n; v++) {
+                if (!matriz[u][v]) continue;
+                arestas.add(sorteio.nextBoolean() ? new int[]{u, v} : new int[]{v, u});
+                if (sorteio.nextInt(4) == 0) arestas.add(new int[]{v, u});
+                if (sorteio.nextInt(8) == 0) arestas.add(new int[]{u, v});
+                inteiros &= (divisor == -1.0 || (u + v) % 2 == 0) && u + v != 2; // -0.0 não é int
+            }
+            if (sorteio.nextInt(8) == 0) arestas.add(new int[]{u, u});
+        }
+        Collections.shuffle(arestas, sorteio);
 
-    static Set<Integer> visitados; // Set de vétice visitados usado na DFS (depth-first search)
+        File arquivo = null;
+        try {
+            arquivo = File.createTempFile("autoteste", ".csr");
+            GrafoForaDoHeap grafo;
+            try (ConstrutorForaDoHeap construtor = new ConstrutorForaDoHeap(arquivo.toPath(), n, primeiroId, comPesos)) {
+                for (int passada = 0; passada < 2; passada++) {
+                    if (passada == 1) construtor.comecaGravacao();
+                    for (int[] aresta : arestas) {
+                        long u = primeiroId + aresta[0], v = primeiroId + aresta[1];
+                        if (comPesos) construtor.adicionaAresta(u, v, (aresta[0] + aresta[1] - 2) / divisor);
+                        else construtor.adicionaAresta(u, v);
+                    }
+                }
+                grafo = construtor.termina();
+            }
+            if (!isMesmoGrafo(grafo, matriz)) erros.add("ConstrutorForaDoHeap deu outro grafo");
+            for (int u = 0; u < n; u++) if (grafo.getId(u) != primeiroId + u) erros.add("ConstrutorForaDoHeap trocou o número de " + u);
+            int tipo = !comPesos ? Pesos.SEM_PESO : inteiros ? Pesos.INT : Pesos.FLOAT;
+            if (grafo.tipoDosPesos() != tipo) erros.add("ConstrutorForaDoHeap guardou os pesos como " + Pesos.nomeDoTipo(grafo.tipoDosPesos()));
+            for (int u = 0; comPesos && u < n; u++) {
+                for (int v = 0; v < n; v++) {
+                    if (matriz[u][v] && Double.compare(grafo.peso(u, v), (u + v - 2) / divisor) != 0) erros.add("ConstrutorForaDoHeap errou o peso de " + u + "-" + v);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            erros.add("ConstrutorForaDoHeap falhou: " + e);
+        } finally {
+            if (arquivo != null) arquivo.delete();
+        }
+    }
 
     /**
-     * Função para decidir dado um conjunto de 4 vértices se eles não contém nenhum ciclo.
-     *
-     * <p>
-     *     A função funciona como uma DFS, escolhemos um vértice para ser a raiz e a partir da raiz
-     *     vamos para cada um de seus filhos e verificamos se esses filhos possuem uma conexão com
-     *     algum vértice já visitado.
-     *
-     *     Se um vértice possui uma conexão com um vértice já visitado pela DFS então o conjunto
-     *     de vértices não pode ser uma árvore. Nesse caso a função retorna False.
-     *
-     *     Caso não possua nenhum ciclo então ou o conjunto forma uma árvore ou eles são desconexos.
-     *     Nesse caso a função retorna True.
-     * </p>
-     *
-     * @param grafo Grafo completo contendo os vértices e seus vizinhos
-     * @param listaDeVertices Lista contendo o conjunto de 4 vértices a serem verificados
-     * @param vertex Vértice atual da DFS
-     * @param parent Pai do vértice atual, ou seja, vértice de onde viemos
-     * @return True se não possuem ciclo, False se possuem ciclo.
+     * Função que converte o grafo, escrito como lista de arestas (às vezes com gzip e com pesos) e
+     * como DIMACS, com <i>converteParaCsr</i>. Os números da lista começam em um valor sorteado e
+     * os vértices isolados aparecem sozinhos na linha, então a faixa cobre todos os vértices.
      */
-    static boolean isTree(List<List<Integer>> grafo, List<Integer> listaDeVertices, int vertex, int parent) {
-        visitados.add(vertex);
-        for (Integer neighbor : grafo.get(vertex)) {
-            if (neighbor == parent) continue;
+    private static void confereConversaoParaCsr(boolean[][] matriz, Random sorteio, List<String> erros) {
+        int n = matriz.length;
+        long primeiroId = sorteio.nextInt(1000) - 500;
+        boolean comPesos = sorteio.nextBoolean();
+        StringBuilder arestas = new StringBuilder(), dimacs = new StringBuilder();
+        int m = 0;
+        for (int u = 0; u < n; u++) {
+            boolean isolado = true;
+            for (int v = 0; v < n; v++) {
+                isolado &= !matriz[u][v];
+                if (!matriz[u][v] || v < u) continue;
+                m++;
+                arestas.append(primeiroId + u).append(' ').append(primeiroId + v);
+                arestas.append(comPesos ? " " + (u + v + 1) / 2 + "\n" : "\n");
+                dimacs.append("e ").append(v + 1).append(' ').append(u + 1).append('\n');
+            }
+            if (isolado) arestas.append(primeiroId + u).append('\n');
+        }
+        dimacs.insert(0, "p edge " + n + " " + m + "\n");
 
-            if (listaDeVertices.contains(neighbor)) {
-                if (visitados.contains(neighbor)) {
-                    return false;
+        File entrada = null, saida = null;
+        try {
+            entrada = File.createTempFile("autoteste", ".edges");
+            saida = File.createTempFile("autoteste", ".csr");
+            for (int f = 0; f < 2; f++) {
+                byte[] texto = (f == 0 ? arestas : dimacs).toString().getBytes(StandardCharsets.US_ASCII);
+                if (f == 0 && sorteio.nextBoolean()) {
+                    try (GZIPOutputStream gzip = new GZIPOutputStream(Files.newOutputStream(entrada.toPath()))) {
+                        gzip.write(texto);
+                    }
+                } else {
+                    Files.write(entrada.toPath(), texto);
                 }
-                if (!isTree(grafo, listaDeVertices, neighbor, vertex)) {
-                    return false;
+                String formato = f == 0 ? "arestas" : "dimacs";
+                GrafoForaDoHeap grafo = converteParaCsr(entrada.toPath(), formato, f == 0 && comPesos, saida.toPath());
+                long primeiro = f == 0 ? primeiroId : 1;
+                if (!isMesmoGrafo(grafo, matriz)) erros.add("converteParaCsr de " + formato + " deu outro grafo");
+                for (int u = 0; u < n; u++) if (grafo.getId(u) != primeiro + u) erros.add("converteParaCsr de " + formato + " trocou o número de " + u);
+                for (int u = 0; f == 0 && comPesos && u < n; u++) {
+                    for (int v = 0; v < n; v++) {
+                        if (matriz[u][v] && grafo.peso(u, v) != (u + v + 1) / 2) erros.add("converteParaCsr errou o peso de " + u + "-" + v);
+                    }
                 }
             }
+        } catch (IOException | RuntimeException e) {
+            erros.add("converteParaCsr falhou: " + e);
+        } finally {
+            if (entrada != null) entrada.delete();
+            if (saida != null) saida.delete();
+        }
+    }
+
+    private static String escrevePeso(double peso, Random sorteio) {
+        if (peso == Math.rint(peso) && sorteio.nextBoolean()) return Long.toString((long) peso);
+        return Double.toString(peso);
+    }
+
+    /**
+     * Função que confere o tipo dos pesos e o peso de cada aresta, por <i>peso(u, v)</i> e pelo iterador.
+     */
+    private static boolean isMesmosPesos(Grafo grafo, boolean[][] matriz, double[][] pesos, int tipo) {
+        int n = matriz.length;
+        if (!isMesmoGrafo(grafo, matriz) || grafo.tipoDosPesos() != tipo) return false;
+        IteradorDeVizinhos vizinhos = grafo.iterador();
+        for (int u = 0; u < n; u++) {
+            for (int v = 0; v < n; v++) {
+                if (matriz[u][v] && grafo.peso(u, v) != pesos[u][v]) return false;
+                if (!matriz[u][v] && !Double.isNaN(grafo.peso(u, v))) return false;
+            }
+            vizinhos.comeca(u);
+            for (int v = vizinhos.proximo(); v >= 0; v = vizinhos.proximo()) {
+                if (vizinhos.peso() != pesos[u][v]) return false;
+            }
         }
         return true;
     }
 
+    private static LeitorDeLinhas leitorDe(CharSequence texto) {
+        return new LeitorDeLinhas(new ByteArrayInputStream(texto.toString().getBytes(StandardCharsets.US_ASCII)));
+    }
+
     /**
-     *  Função para decidir dado um conjunto de 4 vértices se eles formam um grafo caminho.
-     *
-     *  <p>
-     *      Para formar um grafo caminho os 4 vértices não podem conter um ciclo, logo,
-     *      usamos a função <i>isTree</i> para verificar se eles possuem ciclo ou não.
-     *
-     *      Além disso, o grafo precisa ser conexo e para isso a função verifica se
-     *      todos os vértices foram vistados na DFS, se isso acontecer eles são conexos e
-     *      o tamanho do Set de vértices visitados será igual a 4. Então precisamos verificar
-     *      se o tamanho do Set é igual ao tamanho da lista de vértices.
-     *
-     *      Também é necessário verificar se cada vértice da lista está conectado com
-     *      no máximo 2 outros vértices da lista pois pode acontecer da lista formar uma árvore
-     *      porém um vértice ter 3 conexões.
-     *
-     *      Se a lista passar por todas as verificações então o conjunto de 4 vértices é
-     *      um P4.
-     *
-     *  </p>
-     *
-     * @param listaDeVertices Lista contendo o conjunto de 4 vértices a serem verificados
-     * @param grafo Grafo completo contendo os vértices e seus vizinhos
-     * @return True se formam um grafo caminho, False caso contrário.
+     * Função que escreve N(n) de graph6 e sparse6: um byte até 62 e 126 seguido de 3 bytes até 258047.
      */
-    static boolean isP4(List<Integer> listaDeVertices, List<List<Integer>> grafo) {
-        visitados = new HashSet<>();
-        if (!isTree(grafo, listaDeVertices, listaDeVertices.get(0), -1) || visitados.size() != listaDeVertices.size()) {
-            return false;
+    private static void escreveTamanho(StringBuilder saida, int n) {
+        if (n <= 62) {
+            saida.append((char) (n + 63));
+        } else {
+            saida.append((char) 126);
+            for (int deslocamento = 12; deslocamento >= 0; deslocamento -= 6) saida.append((char) ((n >>> deslocamento & 63) + 63));
+        }
+    }
+
+    /**
+     * Função que escreve os bits em grupos de 6, do mais alto para o mais baixo, completando o
+     * último grupo com <i>completa</i>.
+     */
+    private static void escreveBits(StringBuilder saida, List<Boolean> bits, boolean completa) {
+        while (bits.size() % 6 != 0) bits.add(completa);
+        for (int i = 0; i < bits.size(); i += 6) {
+            int valor = 0;
+            for (int b = i; b < i + 6; b++) valor = (valor << 1) | (bits.get(b) ? 1 : 0);
+            saida.append((char) (valor + 63));
         }
+    }
 
-        for (Integer vertex : listaDeVertices) {
-            int cntNeighbor = 0;
-            for (Integer neighbor : grafo.get(vertex)) {
-                if (listaDeVertices.contains(neighbor)) cntNeighbor++;
-            }
-            if (cntNeighbor > 2) return false;
+    /**
+     * Função que codifica o grafo em graph6 (ver <i>grafoDeGraph6</i>).
+     */
+    private static String codificaGraph6(boolean[][] matriz) {
+        int n = matriz.length;
+        StringBuilder saida = new StringBuilder();
+        escreveTamanho(saida, n);
+        List<Boolean> bits = new ArrayList<>();
+        for (int j = 1; j < n; j++) {
+            for (int i = 0; i < j; i++) bits.add(matriz[i][j]);
         }
-        return true;
+        escreveBits(saida, bits, false);
+        return saida.toString();
     }
 
     /**
-     * Função para contar, dado um conjunto de 5 vértices, quantos grafos P4 esse conjunto pode induzir.
+     * Função que codifica o grafo em sparse6, sem o ':' inicial (ver <i>grafoDeSparse6</i>).
      *
      * <p>
-     *      Dado um conjunto de 5 vértices possuimos 5 combinações de 4 vértices.
-     *      Para cada combinação é feito a verificação com a função <i>isP4</i> e caso
-     *      retorne True é adicionado 1 ao contador de P4.
+     *     As arestas {x, v} saem em ordem de v. Quando v é o vértice atual o par é (0, x), quando
+     *     é o seguinte é (1, x) e, mais adiante, (1, v) muda o vértice atual antes de (0, x). Quando
+     *     n = 2^k, com k < 6, e o completamento poderia ser lido como a aresta {n-1, n-1}, ele começa
+     *     com um bit 0, como pede o formato.
      * </p>
-     * @param subConj Lista contendo o conjunto de 5 vértices a serem verificados
-     * @param grafo Grafo completo contendo os vértices e seus vizinhos
-     * @return Quantidade de grafos P4 que o conjunto pode induzir
      */
-    static int countP4(List<Integer> subConj, List<List<Integer>> grafo) {
-        int qtdP4 = 0;
+    private static String codificaSparse6(boolean[][] matriz) {
+        int n = matriz.length;
+        int k = 32 - Integer.numberOfLeadingZeros(Math.max(0, n - 1));
+        StringBuilder saida = new StringBuilder();
+        escreveTamanho(saida, n);
+        List<Boolean> bits = new ArrayList<>();
+        int atual = 0;
+        for (int v = 0; v < n; v++) {
+            for (int x = 0; x < v; x++) {
+                if (!matriz[x][v]) continue;
+                if (v > atual + 1) {
+                    adicionaPar(bits, true, v, k);
+                    adicionaPar(bits, false, x, k);
+                } else {
+                    adicionaPar(bits, v == atual + 1, x, k);
+                }
+                atual = v;
+            }
+        }
+        int falta = (6 - bits.size() % 6) % 6;
+        if (k < 6 && n == 1 << k && falta >= k + 1 && atual == n - 2) bits.add(false);
+        escreveBits(saida, bits, true);
+        return saida.toString();
+    }
 
-        for (int i = 0; i < subConj.size(); i++) { // Gera toda as combinações de 4 elementos
-            List<Integer> listaDeVertices = new ArrayList<>();
+    private static void adicionaPar(List<Boolean> bits, boolean b, int x, int k) {
+        bits.add(b);
+        for (int i = k - 1; i >= 0; i--) bits.add((x >>> i & 1) != 0);
+    }
+
+    /**
+     * Função que grava o grafo em um arquivo binário temporário e o abre com <i>GrafoForaDoHeap.mapeia</i>.
+     *
+     * <p>
+     *     O arquivo não tem a extensão .csr, então só o número mágico o identifica. O cabeçalho deve
+     *     marcar <i>TEM_IDS</i> somente quando os números não são 0..n-1, e cópias do arquivo com outra
+     *     versão, outro tipo de peso, outro número mágico ou truncadas devem ser recusadas.
+     * </p>
+     *
+     * @return O grafo mapeado, ou null se o arquivo não pôde ser gravado.
+     */
+    private static GrafoForaDoHeap regravaCsr(Grafo grafo, List<String> erros) {
+        Path arquivo = null, alterado = null;
+        try {
+            arquivo = File.createTempFile("autoteste", ".bin").toPath();
+            alterado = File.createTempFile("autoteste", ".bin").toPath();
+            GrafoForaDoHeap.grava(grafo, arquivo);
+            if (!GrafoForaDoHeap.reconhece(arquivo)) erros.add("GrafoForaDoHeap.reconhece não reconheceu o arquivo gravado");
 
-            for (int j = 0; j < subConj.size(); j++) {
-                if (j == i) continue;
-                listaDeVertices.add(subConj.get(j));
-                listaDeVertices.sort(Integer::compareTo);
+            byte[] conteudo = Files.readAllBytes(arquivo);
+            boolean temIds = false;
+            for (int u = 0; u < grafo.getQtdVertices(); u++) if (grafo.getId(u) != u) temIds = true;
+            if (((conteudo[12] & GrafoForaDoHeap.TEM_IDS) != 0) != temIds) erros.add("O cabeçalho marcou TEM_IDS = " + !temIds);
+            for (int posicao : new int[]{0, 8, 16, -1}) {
+                byte[] copia = posicao < 0 ? Arrays.copyOf(conteudo, conteudo.length - 4) : conteudo.clone();
+                if (posicao >= 0) copia[posicao] += posicao == 16 ? 100 : 1; // No byte 16, um tipo de peso que não existe
+                Files.write(alterado, copia);
+                try {
+                    GrafoForaDoHeap.mapeia(alterado);
+                    erros.add("GrafoForaDoHeap.mapeia aceitou o arquivo " + (posicao < 0 ? "truncado" : "alterado no byte " + posicao));
+                } catch (IOException e) {
+                    // Esperado
+                }
             }
+            return GrafoForaDoHeap.mapeia(arquivo);
+        } catch (IOException e) {
+            return null;
+        } finally {
+            if (arquivo != null) arquivo.toFile().delete(); // O mapeamento continua válido sem o arquivo
+            if (alterado != null) alterado.toFile().delete();
+        }
+    }
 
-            if (isP4(listaDeVertices, grafo)) { // Testa se forma um grafo P4
-                qtdP4++;
+    /**
+     * Função que conta os P4 induzidos testando cada combinação de 4 vértices: um P4 tem 3
+     * arestas e dois vértices de grau 1.
+     */
+    private static long qtdP4Induzidos(boolean[][] matriz) {
+        int n = matriz.length;
+        long qtd = 0;
+        for (int mascara = 0; mascara < 1 << n; mascara++) {
+            if (Integer.bitCount(mascara) != 4) continue;
+            int arestas = 0, folhas = 0;
+            for (int u = 0; u < n; u++) {
+                if ((mascara >>> u & 1) == 0) continue;
+                int grau = 0;
+                for (int v = 0; v < n; v++) if ((mascara >>> v & 1) != 0 && matriz[u][v]) grau++;
+                arestas += grau;
+                if (grau == 1) folhas++;
             }
+            if (arestas == 6 && folhas == 2) qtd++;
+        }
+        return qtd;
+    }
+
+    /**
+     * Função que conta os conjuntos de 5 vértices com mais de um P4 testando cada combinação de 5.
+     */
+    private static long qtdViolacoes(boolean[][] matriz) {
+        int n = matriz.length;
+        long qtd = 0;
+        int[] conjunto = new int[5];
+        for (int mascara = 0; mascara < 1 << n; mascara++) {
+            if (Integer.bitCount(mascara) != 5) continue;
+            for (int v = 0, k = 0; v < n; v++) if ((mascara >>> v & 1) != 0) conjunto[k++] = v;
+            if (P4_POR_MASCARA[mascaraDoConjunto(matriz, conjunto)] > 1) qtd++;
+        }
+        return qtd;
+    }
+
+    /**
+     * Função que confere uma testemunha: os 5 vértices são distintos e os dois P4, diferentes,
+     * são caminhos induzidos dentro do conjunto.
+     */
+    private static boolean isTestemunhaValida(boolean[][] matriz, Testemunha testemunha) {
+        int[] conjunto = testemunha.getConjunto();
+        if (conjunto.length != 5 || Arrays.stream(conjunto).distinct().count() != 5) return false;
+        int[] p = testemunha.getPrimeiroP4(), q = testemunha.getSegundoP4();
+        int[] ordenadoP = p.clone(), ordenadoQ = q.clone();
+        Arrays.sort(ordenadoP);
+        Arrays.sort(ordenadoQ);
+        if (Arrays.equals(ordenadoP, ordenadoQ)) return false;
+        for (int[] caminho : new int[][]{p, q}) {
+            for (int v : caminho) if (Arrays.binarySearch(conjunto, v) < 0) return false;
+            if (!matriz[caminho[0]][caminho[1]] || !matriz[caminho[1]][caminho[2]] || !matriz[caminho[2]][caminho[3]]
+                    || matriz[caminho[0]][caminho[2]] || matriz[caminho[1]][caminho[3]] || matriz[caminho[0]][caminho[3]]) return false;
+        }
+        return true;
+    }
 
+    /**
+     * @return A máscara das arestas induzidas pelo conjunto (ver <i>bitDoPar</i>).
+     */
+    private static int mascaraDoConjunto(boolean[][] matriz, int[] conjunto) {
+        int mascara = 0;
+        for (int j = 1; j < conjunto.length; j++) {
+            for (int i = 0; i < j; i++) {
+                if (matriz[conjunto[i]][conjunto[j]]) mascara |= 1 << bitDoPar(i, j);
+            }
+        }
+        return mascara;
+    }
 
+    /**
+     * Função que decide se o grafo é P4-esparso testando com <i>isP4</i> cada combinação de 4
+     * vértices de cada conjunto de 5, sem máscaras. Só serve para grafos bem pequenos.
+     */
+    private static boolean isP4SparsePorCombinacoes(GrafoCSR grafo) {
+        int n = grafo.getQtdVertices();
+        int[] subConj = new int[5];
+        for (int mascara = 0; mascara < 1 << n; mascara++) {
+            if (Integer.bitCount(mascara) != 5) continue;
+            for (int i = 0, k = 0; i < n; i++) if ((mascara >>> i & 1) != 0) subConj[k++] = i;
+            if (qtdP4PorCombinacoes(subConj, grafo) > 1) return false;
         }
+        return true;
+    }
 
+    /**
+     * Função que conta os P4 do conjunto de 5 vértices testando cada combinação de 4 com <i>isP4</i>.
+     */
+    private static int qtdP4PorCombinacoes(int[] subConj, GrafoCSR grafo) {
+        int qtdP4 = 0;
+        int[] listaDeVertices = new int[4];
+        for (int fora = 0; fora < subConj.length; fora++) {
+            for (int i = 0, k = 0; i < subConj.length; i++) if (i != fora) listaDeVertices[k++] = subConj[i];
+            if (isP4(listaDeVertices, grafo)) qtdP4++;
+        }
         return qtdP4;
     }
 
     /**
-     * Função que gera todos os subconjuntos de 5 vértices e conta quantos grafos P4 cada
-     * subconjunto pode induzir. Se algum subconjunto induzir mais de um grafo P4 então o
-     * grafo não é P4-esparso. Caso contrário, ele é P4-esparso.
-     *
-     *
-     * @param grafo Grafo completo contendo os vértices e seus vizinhos.
-     * @return True se o grafo é P4-esparso e False caso contrário.
+     * @return <i>tamanho</i> vértices distintos de 0..n-1 sorteados, em ordem crescente.
      */
-    static boolean isP4Sparse(List<List<Integer>> grafo) {
-        if (listOfNodes.size() < 5) return true;
+    private static int[] sorteiaConjunto(Random sorteio, int n, int tamanho) {
+        int[] vertices = new int[n];
+        for (int v = 0; v < n; v++) vertices[v] = v;
+        for (int i = 0; i < tamanho; i++) { // Os primeiros de um embaralhamento parcial
+            int j = i + sorteio.nextInt(n - i);
+            int troca = vertices[i];
+            vertices[i] = vertices[j];
+            vertices[j] = troca;
+        }
+        int[] conjunto = Arrays.copyOf(vertices, tamanho);
+        Arrays.sort(conjunto);
+        return conjunto;
+    }
 
-        List<Integer> subConj = new ArrayList<>();
+    private static boolean[][] grafoAleatorio(Random sorteio, int n, double densidade) {
+        boolean[][] matriz = new boolean[n][n];
+        for (int u = 0; u < n; u++) {
+            for (int v = u + 1; v < n; v++) matriz[u][v] = matriz[v][u] = sorteio.nextDouble() < densidade;
+        }
+        return matriz;
+    }
 
-        for (int i = 0; i < listOfNodes.size(); i++) {
-            subConj.add(listOfNodes.get(i));
-            for (int j = i+1; j < listOfNodes.size(); j++) {
-                subConj.add(listOfNodes.get(j));
-                for (int k = j+1; k < listOfNodes.size(); k++) {
-                    subConj.add(listOfNodes.get(k));
-                    for (int l = k+1; l < listOfNodes.size(); l++) {
-                        subConj.add(listOfNodes.get(l));
-                        for (int m = l+1; m < listOfNodes.size(); m++) {
-                            subConj.add(listOfNodes.get(m)); // Conjunto contendo uma combinação de 5 vértices.
+    /**
+     * Função que sorteia um grafo P4-esparso com os vértices embaralhados.
+     *
+     * <p>
+     *     O grafo é montado de cima para baixo como na decomposição de <i>DecomposicaoP4Esparsa</i>:
+     *     cada parte com mais de um vértice vira a união ou a junção de duas partes menores ou,
+     *     com pelo menos 4 vértices, uma aranha fina ou gorda cuja cabeça é outra parte. Essas três
+     *     operações mantêm o grafo P4-esparso.
+     * </p>
+     */
+    private static boolean[][] grafoP4EsparsoAleatorio(Random sorteio, int n) {
+        boolean[][] matriz = new boolean[n][n];
+        int[] vertices = new int[n];
+        for (int v = 0; v < n; v++) vertices[v] = v;
+        for (int i = n - 1; i > 0; i--) { // Embaralha para a estrutura não seguir a numeração
+            int j = sorteio.nextInt(i + 1);
+            int troca = vertices[i];
+            vertices[i] = vertices[j];
+            vertices[j] = troca;
+        }
+        montaP4Esparso(sorteio, matriz, vertices, 0, n);
+        return matriz;
+    }
 
-                            if (countP4(subConj, grafo) > 1) // Testo se o subconjunto de 5 vértices induz mais de um P4
-                                return false;
+    private static void montaP4Esparso(Random sorteio, boolean[][] matriz, int[] vertices, int inicio, int fim) {
+        int tamanho = fim - inicio;
+        if (tamanho < 2) return;
+        int operacao = sorteio.nextInt(tamanho >= 4 ? 3 : 2);
+        if (operacao < 2) { // União (0) ou junção (1) de duas partes
+            int meio = inicio + 1 + sorteio.nextInt(tamanho - 1);
+            montaP4Esparso(sorteio, matriz, vertices, inicio, meio);
+            montaP4Esparso(sorteio, matriz, vertices, meio, fim);
+            for (int a = inicio; a < meio; a++) {
+                for (int b = meio; b < fim; b++) liga(matriz, vertices[a], vertices[b], operacao == 1);
+            }
+            return;
+        }
 
-                            subConj.remove(4);
-                        }
-                        subConj.remove(3);
-                    }
-                    subConj.remove(2);
-                }
-                subConj.remove(1);
+        // Aranha: pernas S em [inicio, inicio + k), corpo K em [inicio + k, inicio + 2k) e cabeça H no resto
+        int k = 2 + sorteio.nextInt(tamanho / 2 - 1);
+        int corpo = inicio + k, cabeca = inicio + 2 * k;
+        boolean gorda = sorteio.nextBoolean();
+        montaP4Esparso(sorteio, matriz, vertices, cabeca, fim);
+        for (int i = 0; i < k; i++) {
+            for (int j = 0; j < k; j++) {
+                if (i < j) liga(matriz, vertices[corpo + i], vertices[corpo + j], true);
+                liga(matriz, vertices[inicio + i], vertices[corpo + j], (i == j) != gorda);
             }
-            subConj.remove(0);
+            for (int h = cabeca; h < fim; h++) liga(matriz, vertices[corpo + i], vertices[h], true);
         }
+    }
 
-        return true;
+    private static void liga(boolean[][] matriz, int u, int v, boolean adjacentes) {
+        matriz[u][v] = matriz[v][u] = adjacentes;
+    }
 
+    /**
+     * Função que monta o grafo CSR da matriz, com os vértices 0..n-1.
+     */
+    private static GrafoCSR grafoDaMatriz(boolean[][] matriz) {
+        int n = matriz.length;
+        int[] offsets = new int[n + 1];
+        for (int u = 0; u < n; u++) {
+            offsets[u + 1] = offsets[u];
+            for (int v = 0; v < n; v++) if (matriz[u][v]) offsets[u + 1]++;
+        }
+        int[] targets = new int[offsets[n]];
+        for (int u = 0, pos = 0; u < n; u++) {
+            for (int v = 0; v < n; v++) if (matriz[u][v]) targets[pos++] = v;
+        }
+        return new GrafoCSR(offsets, targets);
     }
 
     /**
-     * Função responsável por instanciar um objeto da classe Leitor, classe responsável
-     * por ler cada linha do arquivo.
-     * @param path Caminho do arquivo.
-     * @return Uma instância de leitor.
+     * @return O grafo como "n vértices, arestas u-v ...", para reproduzir uma divergência.
      */
-    static Leitor createLeitor(String path) {
-        Leitor leitor;
-        while (true) {
-            try {
-                leitor = new Leitor(path);
-                break;
-            } catch (FileNotFoundException e) {
-                System.out.print("Arquivo não encontrado, verifique o caminho do arquivo: " + path);
-                System.exit(0);
+    private static String descreve(boolean[][] matriz) {
+        StringBuilder texto = new StringBuilder(matriz.length + " vértices, arestas");
+        for (int u = 0; u < matriz.length; u++) {
+            for (int v = u + 1; v < matriz.length; v++) {
+                if (matriz[u][v]) texto.append(' ').append(u).append('-').append(v);
             }
         }
-        return leitor;
+        return texto.toString();
     }
 
+    static final String USO = "Uso: java AlgGrafos [arquivo...] [--formato texto|arestas|dimacs|metis|graph6|sparse6] [--pesos]\n"
+            + "    [--violacoes [limite]] [--grava-csr saida] [--comprimido] [--ordem grau|degenerescencia|bfs|rcm]\n"
+            + "    [--compara-ordens] [--forca-bruta] [--faixa p partes] [--converte-csr saida]\n"
+            + "    [--autoteste [quantidade [semente]]]";
+    private static final String INT = "\\d{1,9}";   // Números que cabem em um int
+    private static final String LONG = "\\d{1,18}"; // Números que cabem em um long
 
+    /**
+     * Função que devolve o valor da opção args[i], o argumento seguinte.
+     *
+     * @param padrao Expressão regular que o valor precisa respeitar.
+     * @throws IllegalArgumentException Se o valor falta, é outra opção ou não respeita o padrão.
+     */
+    private static String valorDaOpcao(String[] args, int i, String padrao) {
+        if (i + 1 >= args.length || args[i + 1].startsWith("--")) throw new IllegalArgumentException("Falta o valor de " + args[i]);
+        if (!args[i + 1].matches(padrao)) throw new IllegalArgumentException("Valor inválido para " + args[i] + ": " + args[i + 1]);
+        return args[i + 1];
+    }
 
     /**
      * Método principal do programa.
+     * <p>
+     *     Uso: java AlgGrafos [arquivo...] [--formato texto|arestas|dimacs|metis|graph6|sparse6] [--pesos]
+     *     [--violacoes [limite]] [--grava-csr saida] [--comprimido] [--ordem grau|degenerescencia|bfs|rcm]
+     *     [--compara-ordens] [--forca-bruta] [--faixa p partes] [--converte-csr saida]
+     *     [--autoteste [quantidade [semente]]].
+     *
+     *     Uma opção desconhecida, ou sem o valor que ela exige, termina o programa com a mensagem
+     *     de uso (ver <i>USO</i>); um argumento só é tomado como arquivo se não começar com "--".
+     *
+     *     Sem opções o grafo de <i>arquivo</i> (ou de <i>path</i>) é lido e verificado; arquivos
+     *     binários são mapeados na memória (ver <i>abreGrafo</i>). Sem <i>--formato</i> o formato
+     *     de cada arquivo é escolhido pela extensão (ver <i>formatoDoArquivo</i>). Coleções graph6
+     *     e sparse6 têm cada grafo verificado (ver <i>verificaColecao</i>).
+     *
+     *     Com mais de um arquivo os grafos são lidos e verificados em paralelo (ver
+     *     <i>verificaArquivos</i>), inclusive as coleções misturadas aos outros arquivos. Com vários
+     *     arquivos ou com uma coleção as demais opções, exceto <i>--formato</i> e <i>--pesos</i>,
+     *     tratam um único grafo e são recusadas com a mensagem de uso.
+     *
+     *     Com <i>--pesos</i> os pesos das arestas são lidos e guardados no grafo (ver <i>Pesos</i>) e
+     *     também são gravados por <i>--grava-csr</i>; <i>--comprimido</i> e a matriz em bits não os guardam.
+     *
+     *     Com <i>--violacoes</i> o programa imprime cada conjunto de 5 vértices com mais de um P4
+     *     assim que ele é encontrado. <i>--grava-csr</i> converte o grafo lido para o formato binário
+     *     (ver <i>GrafoForaDoHeap</i>), que depois é aberto sem leitura do texto, <i>--comprimido</i>
+     *     verifica o grafo com as listas comprimidas (ver <i>GrafoComprimido</i>),
+     *     <i>--ordem</i> renumera os vértices antes das verificações e <i>--compara-ordens</i>
+     *     mede as verificações com cada ordem (ver <i>comparaOrdens</i>).
+     *
+     *     <i>--forca-bruta</i> verifica as C(n, 5) combinações em paralelo no pool comum (ver
+     *     <i>isP4SparseParalelo</i>), sem testemunha. <i>--faixa p partes</i> verifica somente a faixa p
+     *     das combinações divididas em <i>partes</i> faixas iguais (ver <i>faixasBalanceadas</i>), para
+     *     dividir a verificação entre processos ou máquinas.
+     *
+     *     <i>--converte-csr saida</i> grava uma lista de arestas ou um arquivo DIMACS no formato
+     *     binário sem montar o grafo no heap (ver <i>converteParaCsr</i>), para grafos grandes demais
+     *     para <i>--grava-csr</i>; as demais opções, exceto <i>--formato</i> e <i>--pesos</i>, são recusadas.
+     *
+     *     <i>--autoteste</i> não lê arquivo: confere o programa em <i>quantidade</i> grafos pequenos
+     *     aleatórios (1000 por padrão) e imprime as divergências (ver <i>autoteste</i>).
+     * </p>
      * @param args
      */
     public static void main(String[] args) {
-        String line;
-
-        List<List<Integer>> grafo = new ArrayList<>();
-        Leitor leitor = createLeitor(path);
-        listOfNodes = new ArrayList<>();
+        List<String> arquivos = new ArrayList<>();
+        String saidaCsr = null, saidaConvertida = null, ordem = null, formato = null;
+        boolean listarViolacoes = false, comprimir = false, compararOrdens = false, weightedGraph = false;
+        boolean forcaBruta = false;
+        long limite = 0;
+        int faixa = -1, partes = 0;
+        int qtdAutoteste = 0;
+        long semente = System.nanoTime();
 
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("--violacoes")) {
+                    listarViolacoes = true;
+                    if (i + 1 < args.length && args[i + 1].matches(LONG)) limite = Long.parseLong(args[++i]);
+                } else if (args[i].equals("--grava-csr")) {
+                    saidaCsr = valorDaOpcao(args, i++, ".+");
+                } else if (args[i].equals("--converte-csr")) {
+                    saidaConvertida = valorDaOpcao(args, i++, ".+");
+                } else if (args[i].equals("--comprimido")) {
+                    comprimir = true;
+                } else if (args[i].equals("--ordem")) {
+                    ordem = valorDaOpcao(args, i++, ".+");
+                } else if (args[i].equals("--compara-ordens")) {
+                    compararOrdens = true;
+                } else if (args[i].equals("--formato")) {
+                    formato = valorDaOpcao(args, i++, ".+");
+                } else if (args[i].equals("--pesos")) {
+                    weightedGraph = true;
+                } else if (args[i].equals("--autoteste")) {
+                    qtdAutoteste = 1000;
+                    if (i + 1 < args.length && args[i + 1].matches(INT)) qtdAutoteste = Integer.parseInt(args[++i]);
+                    if (i + 1 < args.length && args[i + 1].matches("-?" + LONG)) semente = Long.parseLong(args[++i]);
+                } else if (args[i].equals("--forca-bruta")) {
+                    forcaBruta = true;
+                } else if (args[i].equals("--faixa")) {
+                    if (i + 2 >= args.length || !args[i + 1].matches(INT) || !args[i + 2].matches(INT)) {
+                        throw new IllegalArgumentException("--faixa precisa de dois números: p partes");
+                    }
+                    faixa = Integer.parseInt(args[++i]);
+                    partes = Integer.parseInt(args[++i]);
+                } else if (args[i].startsWith("--")) {
+                    throw new IllegalArgumentException("Opção desconhecida: " + args[i]);
+                } else {
+                    arquivos.add(args[i]);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.print(e.getMessage() + "\n" + USO);
+            return;
+        }
+        if (qtdAutoteste > 0) {
+            System.out.println("Autoteste com " + qtdAutoteste + " grafos, semente " + semente + ".");
+            long divergencias = autoteste(qtdAutoteste, semente);
+            System.out.println(divergencias == 0 ? "Nenhuma divergência." : divergencias + " grafo(s) com divergência.");
+            return;
+        }
+        if (arquivos.isEmpty()) arquivos.add(path);
+        if (faixa >= 0 && (partes == 0 || faixa >= partes)) {
+            System.out.print("Faixa inválida (use --faixa p partes, com 0 <= p < partes)");
+            return;
+        }
+        if (formato != null && !Arrays.asList(FORMATOS).contains(formato)) {
+            System.out.print("Formato desconhecido: " + formato + " (use " + String.join(", ", FORMATOS) + ")");
+            return;
+        }
+        List<String> opcoesDeUmGrafo = new ArrayList<>(); // Opções que tratam o grafo lido de um único arquivo
+        if (listarViolacoes) opcoesDeUmGrafo.add("--violacoes");
+        if (saidaCsr != null) opcoesDeUmGrafo.add("--grava-csr");
+        if (comprimir) opcoesDeUmGrafo.add("--comprimido");
+        if (ordem != null) opcoesDeUmGrafo.add("--ordem");
+        if (compararOrdens) opcoesDeUmGrafo.add("--compara-ordens");
+        if (forcaBruta) opcoesDeUmGrafo.add("--forca-bruta");
+        if (faixa >= 0) opcoesDeUmGrafo.add("--faixa");
+        if (arquivos.size() > 1 || isColecao(formato != null ? formato : formatoDoArquivo(arquivos.get(0)))) {
+            if (saidaConvertida != null) opcoesDeUmGrafo.add("--converte-csr");
+            if (!opcoesDeUmGrafo.isEmpty()) {
+                System.out.print(String.join(", ", opcoesDeUmGrafo)
+                        + " não vale(m) com vários arquivos nem com coleções graph6 e sparse6\n" + USO);
+                return;
+            }
+            verificaArquivos(arquivos, formato, weightedGraph);
+            return;
+        }
 
-        while ((line = leitor.getLine()) != null) {
-            Node node = convertStringToNode(line); // Converte a linha para um vértice
+        if (saidaConvertida != null) {
+            if (!opcoesDeUmGrafo.isEmpty()) { // A conversão não monta o grafo, então não há o que ordenar ou verificar
+                System.out.print(String.join(", ", opcoesDeUmGrafo) + " não vale(m) com --converte-csr\n" + USO);
+                return;
+            }
+            String arquivo = arquivos.get(0);
+            try {
+                GrafoForaDoHeap convertido = converteParaCsr(Paths.get(arquivo), formato != null ? formato : formatoDoArquivo(arquivo),
+                        weightedGraph, Paths.get(saidaConvertida));
+                System.out.println("Grafo gravado em " + saidaConvertida + " (" + convertido.getQtdVertices() + " vértices, "
+                        + convertido.getQtdArcos() + " arcos).");
+            } catch (NoSuchFileException e) {
+                System.out.print("Arquivo não encontrado, verifique o caminho do arquivo: " + arquivo);
+            } catch (IOException e) {
+                System.out.print("Não foi possível converter o arquivo: " + e.getMessage());
+            } catch (NumberFormatException e) {
+                System.out.print("Arquivo inválido: " + arquivo + ": " + e.getMessage());
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                System.out.print("Não foi possível converter o arquivo: " + e.getMessage());
+            }
+            return;
+        }
 
-            listOfNodes.add(node.getNodeId()); // Adiciona o vértice na lista de vértices
+        Grafo lido = abreGrafo(arquivos.get(0), formato, weightedGraph, normalizacao -> {
+            if (normalizacao.getCorrecoes() > 0) System.out.println("Correções feitas na leitura: " + normalizacao + ".");
+        });
+        if (lido.tipoDosPesos() != Pesos.SEM_PESO) {
+            System.out.println("Pesos das arestas guardados como " + Pesos.nomeDoTipo(lido.tipoDosPesos()) + ".");
+        }
+        if (compararOrdens) {
+            comparaOrdens(lido);
+            return;
+        }
+        if (ordem != null) {
+            int[] permutacao = ordemDosVertices(lido, ordem);
+            if (permutacao == null) {
+                System.out.print("Ordem desconhecida: " + ordem + " (use grau, degenerescencia, bfs ou rcm)");
+                return;
+            }
+            lido = renumera(lido, permutacao);
+        }
+        Grafo grafo = comprimir ? GrafoComprimido.de(lido) : lido;
 
-            if (node.getNodeId() >= grafo.size()) { // Testa se a lista grafo possui o índice nodeId
-                for (int i = grafo.size(); i <= node.getNodeId(); i++) {
-                    grafo.add(new ArrayList<>()); // Aumenta o tamanho do grafo até ele ter o índice do vertíce.
-                }
+        if (saidaCsr != null) {
+            try {
+                GrafoForaDoHeap.grava(grafo, Paths.get(saidaCsr));
+                System.out.println("Grafo gravado em " + saidaCsr);
+            } catch (IOException e) {
+                System.out.print("Não foi possível gravar o arquivo: " + saidaCsr);
             }
+            return;
+        }
+
+        if (listarViolacoes) {
+            long total = listaViolacoes(grafo, limite, testemunha -> {
+                System.out.println(testemunha.toString(grafo));
+                System.out.flush();
+            });
+            System.out.println(total + " conjunto(s) de 5 vértices com mais de um P4.");
+            return;
+        }
+
+        if (faixa >= 0) {
+            long[] limites = faixasBalanceadas(grafo.getQtdVertices(), partes);
+            boolean semViolacao = isP4SparseFaixa(grafo, limites[faixa], limites[faixa + 1]);
+            System.out.println("Faixa " + faixa + " de " + partes + " (combinações " + limites[faixa]
+                    + " a " + limites[faixa + 1] + "): " + (semViolacao
+                    ? "nenhum conjunto de 5 vértices com mais de um P4."
+                    : "há conjunto de 5 vértices com mais de um P4, o grafo NÃO é P4-esparso."));
+            return;
+        }
 
-            grafo.set(node.getNodeId(), node.getNeighbors()); // Adiciona o vértice na lista grafo
+        if (forcaBruta) {
+            boolean p4Esparso = isP4SparseParalelo(grafo, ForkJoinPool.commonPool());
+            System.out.println(p4Esparso ? "O grafo é P4-esparso." : "O grafo NÃO é P4-esparso.");
+            return;
         }
 
-        if (isP4Sparse(grafo)) {
+        Testemunha testemunha = verificaP4Sparse(grafo);
+        if (testemunha == null) {
             System.out.println("O grafo é P4-esparso.");
         } else {
             System.out.println("O grafo NÃO é P4-esparso.");
+            System.out.println(testemunha.toString(grafo));
         }
 
     }